@@ -0,0 +1,126 @@
+package mpls.benchmark;
+
+import mpls.Fabric;
+import mpls.ForwardingTable;
+import mpls.RouteTable;
+import mpls.Router;
+import mpls.SelfRouter;
+import mpls.WiringWriter;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Fabric under test, shared by every benchmark: a regular omega wiring, or a random valid one obtained by
+ * relabelling the rows of every column and the input sides of an omega wiring
+ *
+ * <p>Relabelling the first and last columns scrambles the source and destination flags, so no destination bit decides
+ * the output of an element any more: {@link Router#of(Fabric)} falls back to a {@link RouteTable} for the random
+ * wirings, while the omega wirings are routed by destination tag.</p>
+ */
+@State(Scope.Benchmark)
+public class FabricState {
+
+    public static final int QUERIES = 1 << 16;                      //route queries per invocation
+
+    @Param({"8", "64", "512", "2048"})
+    public int ports;
+
+    @Param({"omega", "random"})
+    public String wiring;
+
+    public Fabric fabric;
+    public ByteBuffer connectionFile;
+    public RouteTable routeTable;
+    public Router router;                                           //picked by Router.of for the wiring
+    public int[] sources;
+    public int[] destinations;
+    public ForwardingTable forwardingTable;
+    public int[] codes;                                             //route code of each query
+    public int[] inputs;                                            //scratch batch for forwarding
+    public int[] labels;
+
+    @Setup
+    public void setUp() {
+
+        Random random = new Random(ports);
+        fabric = "omega".equals(wiring) ? Fabric.omega(ports) : irregular(ports, random);
+        connectionFile = ByteBuffer.wrap(WiringWriter.toString(fabric).getBytes(StandardCharsets.US_ASCII));
+        routeTable = RouteTable.build(fabric);
+        router = Router.of(fabric);
+        sources = new int[QUERIES];
+        destinations = new int[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            sources[i] = random.nextInt(ports);
+            destinations[i] = random.nextInt(ports);
+        }
+        forwardingTable = ForwardingTable.compile(fabric);
+        codes = new int[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            codes[i] = routeTable.route(sources[i], destinations[i]);
+        }
+        inputs = new int[QUERIES];
+        labels = new int[QUERIES];
+    }
+
+    /**
+     * Relabel omega wirings until destination tag routing no longer applies; small fabrics may need a few tries
+     */
+    static Fabric irregular(int ports, Random random) {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            Fabric fabric = relabel(Fabric.omega(ports), random);
+            if (SelfRouter.of(fabric) == null) {
+                return fabric;
+            }
+        }
+        throw new IllegalStateException("No irregular relabelling of the " + ports + " port omega wiring found");
+    }
+
+    /**
+     * Permute the rows of every column and randomly swap the two inputs of the elements after the first column; the
+     * result is as valid as the original but no longer follows a regular pattern
+     */
+    static Fabric relabel(Fabric fabric, Random random) {
+
+        int rows = fabric.getRows();
+        int columns = fabric.getColumns();
+        int[][] rowOf = new int[columns][];
+        int[][] swapped = new int[columns][];
+        for (int column = 0; column < columns; column++) {
+            rowOf[column] = new int[rows];
+            swapped[column] = new int[rows];
+            for (int row = 0; row < rows; row++) {
+                rowOf[column][row] = row;
+                swapped[column][row] = column > 0 ? random.nextInt(2) : 0;  //source flags fix the first column inputs
+            }
+            for (int row = rows - 1; row > 0; row--) {
+                int other = random.nextInt(row + 1);
+                int tmp = rowOf[column][row];
+                rowOf[column][row] = rowOf[column][other];
+                rowOf[column][other] = tmp;
+            }
+        }
+
+        Fabric relabelled = new Fabric(rows, columns);
+        for (int element = 0; element < fabric.size(); element++) {
+            int row = fabric.row(element);
+            int column = fabric.column(element);
+            for (int port = Fabric.UP; port <= Fabric.DOWN; port++) {
+                int target = fabric.target(element, port);
+                if (target == Fabric.NONE) {
+                    continue;
+                }
+                int targetRow = fabric.row(target);
+                int targetColumn = fabric.column(target);
+                relabelled.connect(rowOf[column][row], column, port, rowOf[targetColumn][targetRow], targetColumn,
+                        fabric.targetPort(element, port) ^ swapped[targetColumn][targetRow]);
+            }
+        }
+        return relabelled;
+    }
+}
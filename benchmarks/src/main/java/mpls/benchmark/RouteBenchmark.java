@@ -0,0 +1,54 @@
+package mpls.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Route queries (findRoute), through the dense route table and through the router {@link mpls.Router#of} picks for
+ * the wiring (destination tag routing for omega, the route table for random wirings), and batched label forwarding of
+ * the routed packets
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouteBenchmark {
+
+    @Benchmark
+    @OperationsPerInvocation(FabricState.QUERIES)
+    public int routeTable(FabricState state) {
+        int checksum = 0;
+        for (int i = 0; i < FabricState.QUERIES; i++) {
+            checksum += state.routeTable.route(state.sources[i], state.destinations[i]);
+        }
+        return checksum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FabricState.QUERIES)
+    public int router(FabricState state) {
+        int checksum = 0;
+        for (int i = 0; i < FabricState.QUERIES; i++) {
+            checksum += state.router.route(state.sources[i], state.destinations[i]);
+        }
+        return checksum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FabricState.QUERIES)
+    public int forwardBatch(FabricState state) {
+        System.arraycopy(state.sources, 0, state.inputs, 0, FabricState.QUERIES);
+        System.arraycopy(state.codes, 0, state.labels, 0, FabricState.QUERIES);
+        state.forwardingTable.forward(state.inputs, state.labels, FabricState.QUERIES);
+        return state.inputs[FabricState.QUERIES - 1];
+    }
+}
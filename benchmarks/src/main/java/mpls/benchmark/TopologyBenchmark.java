@@ -0,0 +1,50 @@
+package mpls.benchmark;
+
+import mpls.Fabric;
+import mpls.RouteTable;
+import mpls.Topology;
+import mpls.ValidationResult;
+import mpls.Validator;
+import mpls.WiringFormatException;
+import mpls.WiringParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup hot paths: parsing the connection file (createLines), enumerating every path (createConnections),
+ * validating the schema (validateConnections) and building the whole topology through {@link mpls.Router#of}
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TopologyBenchmark {
+
+    @Benchmark
+    public Fabric parse(FabricState state) throws WiringFormatException {
+        return WiringParser.parse(state.connectionFile);
+    }
+
+    @Benchmark
+    public RouteTable enumerate(FabricState state) {
+        return RouteTable.build(state.fabric);
+    }
+
+    @Benchmark
+    public Topology build(FabricState state) {
+        return Topology.build(state.fabric);
+    }
+
+    @Benchmark
+    public ValidationResult validate(FabricState state) {
+        return Validator.validate(state.fabric);
+    }
+}
@@ -0,0 +1,196 @@
+package mpls;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.stream.IntStream;
+
+/**
+ * Headless route lookups for query logs of any size
+ *
+ * <p>Reads one {@code source destination} pair per line (spaces, tabs or a comma between them) and writes
+ * {@code source destination code row,column ...} for each, listing the element crossed at every stage, or
+ * {@code source destination -} when there is no route. Pairs are read in chunks of bounded size; each chunk is
+ * routed and formatted in parallel slices and written in input order before the next one is read, so memory does not
+ * grow with the input.</p>
+ */
+public class BatchRouter {
+
+    public static final int DEFAULT_CHUNK = 1 << 16;                //pairs held in memory at once
+    private static final int SLICE = 1024;                          //pairs routed and formatted by one task
+
+    private final Topology topology;
+    private final int[] sources;
+    private final int[] destinations;
+    private final String[] output;                                  //formatted slices of the current chunk
+
+    public BatchRouter(Topology topology, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive, got " + chunkSize);
+        }
+        this.topology = topology;
+        this.sources = new int[chunkSize];
+        this.destinations = new int[chunkSize];
+        this.output = new String[(chunkSize + SLICE - 1) / SLICE];
+    }
+
+    /**
+     * Route every pair of the input
+     *
+     * <p>Arguments: {@code [--wiring conn.txt] [--input pairs.txt] [--output routes.txt] [--chunk n]}; the input and
+     * output default to stdin and stdout, the wiring to the bundled {@link Topology#DEFAULT_WIRING}.</p>
+     */
+    public static void main(String[] args) throws IOException {
+
+        String wiring = null;
+        String input = null;
+        String output = null;
+        int chunk = DEFAULT_CHUNK;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--wiring":
+                    wiring = args[++i];
+                    break;
+                case "--input":
+                    input = args[++i];
+                    break;
+                case "--output":
+                    output = args[++i];
+                    break;
+                case "--chunk":
+                    chunk = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        Topology topology = Topology.load(wiring == null ? WiringParser.readResource(Topology.DEFAULT_WIRING)
+                : WiringParser.map(Paths.get(wiring)), System.getProperty(Topology.SNAPSHOT_DIRECTORY_PROPERTY));
+        Metrics.get().recordTopology(topology.getFabric());
+        try (BufferedReader in = input == null ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.US_ASCII), 1 << 16)
+                : Files.newBufferedReader(Paths.get(input), StandardCharsets.US_ASCII);
+             Writer out = new BufferedWriter(output == null ? new OutputStreamWriter(System.out, StandardCharsets.US_ASCII)
+                     : Files.newBufferedWriter(Paths.get(output), StandardCharsets.US_ASCII), 1 << 16)) {
+            long start = System.nanoTime();
+            long pairs = new BatchRouter(topology, chunk).run(in, out);
+            out.flush();
+            System.err.printf("Routed %d pairs in %.1f ms%n", pairs, (System.nanoTime() - start) / 1e6);
+        }
+    }
+
+    /**
+     * @param in  one pair per line
+     * @param out receives one route per line, in input order
+     * @return number of pairs routed
+     * @throws IOException if reading or writing fails
+     */
+    public long run(BufferedReader in, Writer out) throws IOException {
+
+        int ports = topology.getFabric().ports();
+        long total = 0;
+        long lineNumber = 0;
+        String line;
+        int count = 0;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            int first = skipBlanks(line, 0);
+            if (first == line.length()) {                           //blank line
+                continue;
+            }
+            int firstEnd = skipDigits(line, first);
+            int second = skipBlanks(line, firstEnd);
+            if (second < line.length() && line.charAt(second) == ',') {
+                second = skipBlanks(line, second + 1);
+            }
+            int secondEnd = skipDigits(line, second);
+            int source = number(line, first, firstEnd, ports);
+            int destination = number(line, second, secondEnd, ports);
+            if (source < 0 || destination < 0 || skipBlanks(line, secondEnd) != line.length()) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": expected two flags between 0 and " + (ports - 1)
+                        + ", got \"" + line + "\"");
+            }
+            sources[count] = source;
+            destinations[count] = destination;
+            if (++count == sources.length) {
+                flush(count, out);
+                total += count;
+                count = 0;
+            }
+        }
+        flush(count, out);
+        return total + count;
+    }
+
+    /**
+     * Route and format the pairs read so far, slices in parallel, then write them in order
+     */
+    private void flush(int count, Writer out) throws IOException {
+
+        int slices = (count + SLICE - 1) / SLICE;
+        IntStream.range(0, slices).parallel().forEach(slice -> output[slice] = format(slice * SLICE, Math.min(count, (slice + 1) * SLICE)));
+        for (int slice = 0; slice < slices; slice++) {
+            out.write(output[slice]);
+            output[slice] = null;
+        }
+    }
+
+    private String format(int from, int to) {
+
+        Fabric fabric = topology.getFabric();
+        Router router = topology.getRouter();
+        int columns = fabric.getColumns();
+        int[] links = new int[columns];
+        StringBuilder sb = new StringBuilder((to - from) * (16 + columns * 6));
+        for (int i = from; i < to; i++) {
+            int code = router.route(sources[i], destinations[i]);
+            sb.append(sources[i]).append(' ').append(destinations[i]).append(' ');
+            if (code == Router.NO_ROUTE) {
+                sb.append("-\n");
+                continue;
+            }
+            fabric.walk(sources[i], code, links);
+            sb.append(RouteTable.format(code, columns));
+            for (int k = 0; k < columns; k++) {
+                int element = links[k] >> 1;
+                sb.append(' ').append(fabric.row(element)).append(',').append(fabric.column(element));
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static int skipBlanks(String line, int i) {
+        while (i < line.length() && (line.charAt(i) == ' ' || line.charAt(i) == '\t')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipDigits(String line, int i) {
+        while (i < line.length() && line.charAt(i) >= '0' && line.charAt(i) <= '9') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return the digits between from and to as a number below bound, or -1
+     */
+    private static int number(String line, int from, int to, int bound) {
+        if (from == to || to - from > 9) {
+            return -1;
+        }
+        int number = 0;
+        for (int i = from; i < to; i++) {
+            number = number * 10 + line.charAt(i) - '0';
+        }
+        return number < bound ? number : -1;
+    }
+}
@@ -0,0 +1,190 @@
+package mpls;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Routes any full permutation through a Benes fabric without conflicts, with the looping algorithm, and single
+ * pairs in closed form
+ *
+ * <p>Each level splits the permutation of a subnetwork between its upper and lower half. The two inputs of an outer
+ * element must take different halves, and so must the two outputs, so the constraints form cycles that alternate
+ * between inputs and outputs. Walking each cycle once assigns a whole level in linear time, which makes the whole
+ * routing O(N log N).</p>
+ */
+public class BenesRouter implements TagRouter {
+
+    @Getter
+    private final Fabric fabric;
+    private final int ports;
+
+    private BenesRouter(Fabric fabric) {
+        this.fabric = fabric;
+        this.ports = fabric.ports();
+    }
+
+    /**
+     * Only the exact labelling of {@link Fabric#benes(int)} is recognised: a Benes network with its rows relabelled,
+     * or any other rearrangeable wiring, is not matched, see {@link Topology#report()}
+     *
+     * @param fabric wired fabric
+     * @return the router, or null if the fabric is not wired as {@link Fabric#benes(int)}
+     */
+    public static BenesRouter of(Fabric fabric) {
+
+        if (!isBenesSized(fabric)) {
+            return null;
+        }
+        Fabric benes = Fabric.benes(fabric.ports());
+        if (!Arrays.equals(fabric.getNext(), benes.getNext()) || !fabric.getNextIsDown().equals(benes.getNextIsDown())) {
+            return null;
+        }
+        return new BenesRouter(fabric);
+    }
+
+    /**
+     * @return whether the fabric has the ports and columns of a Benes fabric, {@code 2 log2(ports) - 1} columns
+     */
+    public static boolean isBenesSized(Fabric fabric) {
+        int ports = fabric.ports();
+        return Integer.bitCount(ports) == 1 && fabric.getColumns() == 2 * Integer.numberOfTrailingZeros(ports) - 1;
+    }
+
+    /**
+     * Route a single pair through the upper half of every subnetwork
+     *
+     * <p>Taking the up output in the first {@code n - 1} columns crosses column {@code k} on input side bit
+     * {@code k} of the source. From the middle column on, the route leaves column {@code n - 1 + j} on output side
+     * bit {@code n - 1 - j} of the destination, always entering from the up side. Each code bit is the input side
+     * XOR the output side, so the whole code follows from the two flags in O(log N).</p>
+     */
+    @Override
+    public int route(int source, int destination) {
+        if (source < 0 || source >= fabric.ports() || destination < 0 || destination >= fabric.ports()) {  //high bits would be dropped
+            return NO_ROUTE;
+        }
+        int n = (fabric.getColumns() + 1) / 2;
+        int code = 0;
+        for (int k = 0; k < n - 1; k++) {
+            code = code << 1 | (source >>> k) & 1;
+        }
+        code = code << 1 | ((source ^ destination) >>> (n - 1)) & 1;
+        for (int level = n - 2; level >= 0; level--) {
+            code = code << 1 | (destination >>> level) & 1;
+        }
+        return code;
+    }
+
+    /**
+     * The output follows from the code bit of {@link #route(int, int)} for the column: a source bit before the middle
+     * column, so the whole group stays together there, and a destination bit from it on
+     */
+    @Override
+    public int output(int source, int column, int element, int port, int destination) {
+        int n = (fabric.getColumns() + 1) / 2;
+        int bit;
+        if (column < n - 1) {
+            bit = (source >>> column) & 1;
+        } else if (column == n - 1) {
+            bit = ((source ^ destination) >>> column) & 1;
+        } else {
+            bit = (destination >>> (2 * n - 2 - column)) & 1;
+        }
+        return port ^ bit;
+    }
+
+    @Override
+    public int destination(int source, int code) {
+        if (source < 0 || source >= fabric.ports() || code >>> fabric.getColumns() != 0) {  //negative or wider code
+            return Fabric.NONE;
+        }
+        return fabric.walk(source, code, null);
+    }
+
+    /**
+     * @param permutation destination of every source, each destination exactly once
+     * @return switch settings of every element and the resulting code of every source
+     */
+    public BenesRouting route(int[] permutation) {
+
+        if (permutation.length != ports) {
+            throw new IllegalArgumentException("Permutation must have " + ports + " entries, got " + permutation.length);
+        }
+        int[] inverse = new int[ports];
+        Arrays.fill(inverse, Fabric.NONE);
+        for (int source = 0; source < ports; source++) {
+            int destination = permutation[source];
+            if (destination < 0 || destination >= ports || inverse[destination] != Fabric.NONE) {
+                throw new IllegalArgumentException("Not a permutation: destination " + destination + " of source " + source);
+            }
+            inverse[destination] = source;
+        }
+
+        BitSet crossed = new BitSet(fabric.size());
+        route(permutation.clone(), inverse, 0, fabric.getColumns() - 1, 0, crossed);
+
+        int[] codes = new int[ports];
+        for (int source = 0; source < ports; source++) {
+            int element = fabric.sourceElement(source);
+            int port = source & 1;
+            int code = 0;
+            for (int column = 0; column < fabric.getColumns(); column++) {
+                int bit = crossed.get(element) ? 1 : 0;
+                code = code << 1 | bit;
+                if (column < fabric.getColumns() - 1) {
+                    int out = port ^ bit;
+                    port = fabric.targetPort(element, out);
+                    element = fabric.target(element, out);
+                }
+            }
+            codes[source] = code;
+        }
+        return new BenesRouting(permutation, crossed, codes);
+    }
+
+    /**
+     * Set the outer elements of one subnetwork and recurse into its halves
+     *
+     * @param permutation output of every subnetwork input
+     * @param inverse     input of every subnetwork output
+     * @param firstColumn input column of the subnetwork
+     * @param lastColumn  output column of the subnetwork
+     * @param firstRow    top row of the subnetwork
+     * @param crossed     receives the element settings
+     */
+    private void route(int[] permutation, int[] inverse, int firstColumn, int lastColumn, int firstRow, BitSet crossed) {
+
+        int size = permutation.length;
+        if (size == 2) {                                            //a single element
+            crossed.set(fabric.index(firstRow, firstColumn), permutation[0] == 1);
+            return;
+        }
+        int[] side = new int[size];                                 //half taken by every input
+        Arrays.fill(side, Fabric.NONE);
+        for (int start = 0; start < size; start += 2) {
+            for (int input = start; side[input] == Fabric.NONE; ) { //follow one cycle of constraints
+                side[input] = Fabric.UP;
+                int partner = inverse[permutation[input] ^ 1];      //shares the output element, takes the other half
+                side[partner] = Fabric.DOWN;
+                input = partner ^ 1;                                //shares the input element, goes up again
+            }
+        }
+
+        int half = size / 2;
+        int[][] halves = {new int[half], new int[half]};
+        int[][] inverses = {new int[half], new int[half]};
+        for (int input = 0; input < size; input++) {
+            int output = permutation[input];
+            halves[side[input]][input >> 1] = output >> 1;
+            inverses[side[input]][output >> 1] = input >> 1;
+        }
+        for (int line = 0; line < half; line++) {
+            crossed.set(fabric.index(firstRow + line, firstColumn), side[2 * line] == Fabric.DOWN);
+            crossed.set(fabric.index(firstRow + line, lastColumn), side[inverse[2 * line]] == Fabric.DOWN);
+        }
+        route(halves[Fabric.UP], inverses[Fabric.UP], firstColumn + 1, lastColumn - 1, firstRow, crossed);
+        route(halves[Fabric.DOWN], inverses[Fabric.DOWN], firstColumn + 1, lastColumn - 1, firstRow + half / 2, crossed);
+    }
+}
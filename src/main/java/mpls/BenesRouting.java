@@ -0,0 +1,29 @@
+package mpls;
+
+import lombok.Getter;
+
+import java.util.BitSet;
+
+/**
+ * Conflict free routing of a whole permutation through a Benes fabric, found by {@link BenesRouter}
+ *
+ * <p>An element set to cross sends each input to the opposite output, so the code bit of every route crossing it
+ * equals its setting.</p>
+ */
+@Getter
+public class BenesRouting {
+
+    private final int[] permutation;                                //destination of every source
+    private final BitSet crossed;                                   //switch setting of every element, set for cross
+    private final int[] codes;                                      //route code of every source
+
+    public BenesRouting(int[] permutation, BitSet crossed, int[] codes) {
+        this.permutation = permutation;
+        this.crossed = crossed;
+        this.codes = codes;
+    }
+
+    public boolean isCrossed(int element) {
+        return crossed.get(element);
+    }
+}
@@ -0,0 +1,418 @@
+package mpls;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Headless switch fabric model, kept as flat primitive arrays instead of linked {@link Convection} objects
+ *
+ * <p>Every binary convection (element) is addressed by {@code row * columns + column}, and every element output
+ * (link) by {@code element * 2 + port}, where port 0 is the up side and port 1 the down side.
+ * Source flags enter the left column at element {@code flag / 2}, port {@code flag % 2}, and destination flags
+ * leave the right column the same way.</p>
+ */
+@Getter
+public class Fabric {
+
+    public static final int NONE = -1;                              //marks an unwired link or an unreachable flag
+    public static final int UP = 0;
+    public static final int DOWN = 1;
+
+    private final int rows;
+    private final int columns;
+    private final int[] next;                                       //target element of each link
+    private final BitSet nextIsDown;                                //whether each link enters its target from the down side
+
+    public Fabric(int rows, int columns) {
+        if (rows < 1 || columns < 1) {
+            throw new IllegalArgumentException("Fabric needs at least one row and one column, got " + rows + "x" + columns);
+        }
+        this.rows = rows;
+        this.columns = columns;
+        try {
+            this.next = new int[Math.multiplyExact(Math.multiplyExact(rows, columns), 2)];
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Fabric of " + rows + "x" + columns + " has too many links for an array", e);
+        }
+        this.nextIsDown = new BitSet(next.length);
+        Arrays.fill(next, NONE);
+    }
+
+    /**
+     * Wrap wiring arrays that were filled earlier, e.g. read back from a {@link TopologySnapshot}
+     */
+    Fabric(int rows, int columns, int[] next, BitSet nextIsDown) {
+        this.rows = rows;
+        this.columns = columns;
+        this.next = next;
+        this.nextIsDown = nextIsDown;
+    }
+
+    /**
+     * Build a fabric just large enough for the given connections
+     *
+     * @param connections every link of the fabric, as read from the connection file
+     * @return the wired fabric
+     */
+    public static Fabric of(List<Connection> connections) {
+
+        int rows = 0;
+        int columns = 0;
+        for (Connection conn : connections) {                       //size the grid after the farthest element
+            rows = Math.max(rows, Math.max(conn.getSourceRow(), conn.getDestinationRow()) + 1);
+            columns = Math.max(columns, Math.max(conn.getSourceColumn(), conn.getDestinationColumn()) + 1);
+        }
+        Fabric fabric = new Fabric(rows, columns);
+        connections.forEach(fabric::connect);
+        return fabric;
+    }
+
+    /**
+     * Omega network: perfect shuffle (rotate left) of the link numbers between every two columns
+     *
+     * @param ports number of source flags, a power of two
+     * @return the wired fabric
+     */
+    public static Fabric omega(int ports) {
+        int n = stages(ports);
+        return wire(ports, (column, line) -> ((line << 1) | (line >>> (n - 1))) & (ports - 1));
+    }
+
+    /**
+     * Baseline network: inverse shuffle of the lower {@code n - column} bits of the link numbers
+     *
+     * @param ports number of source flags, a power of two
+     * @return the wired fabric
+     */
+    public static Fabric baseline(int ports) {
+        int n = stages(ports);
+        return wire(ports, (column, line) -> {
+            int width = n - column;
+            int mask = (1 << width) - 1;
+            int low = line & mask;
+            return (line & ~mask) | (low >>> 1) | ((low & 1) << (width - 1));
+        });
+    }
+
+    /**
+     * Butterfly network: exchange of the lowest and the {@code (n - 1 - column)}-th bit of the link numbers
+     *
+     * @param ports number of source flags, a power of two
+     * @return the wired fabric
+     */
+    public static Fabric butterfly(int ports) {
+        int n = stages(ports);
+        return wire(ports, (column, line) -> {
+            int bit = n - 1 - column;
+            int swap = ((line >>> bit) ^ line) & 1;
+            return line ^ (swap << bit | swap);
+        });
+    }
+
+    /**
+     * Benes network: {@code 2 * log2(ports) - 1} columns, built recursively as an outer column on each side of an
+     * upper and a lower Benes network of half the size
+     *
+     * <p>Output {@code p} of the first column row {@code i} enters input {@code i} of the upper ({@code p = 0}) or
+     * lower ({@code p = 1}) half, and output {@code j} of either half enters the last column row {@code j} on the
+     * same side. Every permutation can be routed without conflicts, see {@link BenesRouter}.</p>
+     *
+     * @param ports number of source flags, a power of two
+     * @return the wired fabric
+     */
+    public static Fabric benes(int ports) {
+        Fabric fabric = new Fabric(ports / 2, 2 * stages(ports) - 1);
+        fabric.wireBenes(0, fabric.columns - 1, 0, ports);
+        return fabric;
+    }
+
+    /**
+     * Wire the Benes network of {@code ports} flags spanning the given columns, starting at {@code firstRow}
+     */
+    private void wireBenes(int firstColumn, int lastColumn, int firstRow, int ports) {
+
+        if (ports == 2) {
+            return;
+        }
+        int half = ports / 4;                                       //rows of each half
+        for (int line = 0; line < ports / 2; line++) {
+            for (int side = UP; side <= DOWN; side++) {
+                int row = firstRow + side * half + (line >> 1);
+                connect(firstRow + line, firstColumn, side, row, firstColumn + 1, line & 1);
+                connect(row, lastColumn - 1, line & 1, firstRow + line, lastColumn, side);
+            }
+        }
+        wireBenes(firstColumn + 1, lastColumn - 1, firstRow, ports / 2);
+        wireBenes(firstColumn + 1, lastColumn - 1, firstRow + half, ports / 2);
+    }
+
+    /**
+     * Wire a {@code log2(ports)} column fabric, link {@code 2 * row + port} of each column entering the next column
+     * on link {@code permutation(column, 2 * row + port)}
+     */
+    private static Fabric wire(int ports, LinkPermutation permutation) {
+
+        int columns = stages(ports);
+        Fabric fabric = new Fabric(ports / 2, columns);
+        for (int column = 0; column < columns - 1; column++) {
+            for (int line = 0; line < ports; line++) {
+                int target = permutation.apply(column, line);
+                fabric.connect(line >> 1, column, line & 1, target >> 1, column + 1, target & 1);
+            }
+        }
+        return fabric;
+    }
+
+    private static int stages(int ports) {
+        if (ports < 2 || Integer.bitCount(ports) != 1) {
+            throw new IllegalArgumentException("Port count must be a power of two, got " + ports);
+        }
+        return Integer.numberOfTrailingZeros(ports);
+    }
+
+    /**
+     * Receives the paths of {@link #forEachPath(int, PathVisitor)}
+     */
+    public interface PathVisitor {
+
+        void visit(int code, int destinationFlag);
+    }
+
+    /**
+     * Inter-column wiring of a regular fabric
+     */
+    private interface LinkPermutation {
+
+        int apply(int column, int line);
+    }
+
+    /**
+     * @return an independent fabric with the same wiring
+     */
+    public Fabric copy() {
+        return new Fabric(rows, columns, next.clone(), (BitSet) nextIsDown.clone());
+    }
+
+    /**
+     * Wire a single link of the fabric, as described by one line of the connection file
+     *
+     * @param conn connection between two elements
+     */
+    public void connect(Connection conn) {
+        connect(conn.getSourceRow(), conn.getSourceColumn(), conn.isSource() ? DOWN : UP,
+                conn.getDestinationRow(), conn.getDestinationColumn(), conn.isDestination() ? DOWN : UP);
+    }
+
+    /**
+     * Wire the output {@code sourcePort} of one element to the input {@code destinationPort} of another one
+     */
+    public void connect(int sourceRow, int sourceColumn, int sourcePort, int destinationRow, int destinationColumn, int destinationPort) {
+        checkElement(sourceRow, sourceColumn);
+        checkElement(destinationRow, destinationColumn);
+        if (sourceColumn == columns - 1) {
+            throw new IllegalArgumentException("Element " + sourceRow + "," + sourceColumn + " is in the final column and has no outgoing links");
+        }
+        if (destinationColumn != sourceColumn + 1) {                //every route crosses each column once
+            throw new IllegalArgumentException("Link from column " + sourceColumn + " must end in column " + (sourceColumn + 1) + ", not " + destinationColumn);
+        }
+        int link = link(index(sourceRow, sourceColumn), sourcePort);
+        next[link] = index(destinationRow, destinationColumn);
+        nextIsDown.set(link, destinationPort == DOWN);
+    }
+
+    public int size() {
+        return rows * columns;
+    }
+
+    /**
+     * @return number of source (and destination) flags, two per row
+     */
+    public int ports() {
+        return rows * 2;
+    }
+
+    public int index(int row, int column) {
+        return row * columns + column;
+    }
+
+    public int row(int element) {
+        return element / columns;
+    }
+
+    public int column(int element) {
+        return element % columns;
+    }
+
+    public boolean isSource(int element) {
+        return element % columns == 0;
+    }
+
+    public boolean isFinal(int element) {
+        return element % columns == columns - 1;
+    }
+
+    public static int link(int element, int port) {
+        return element << 1 | port;
+    }
+
+    /**
+     * @return element reached through the given output, or {@link #NONE} if that output is not wired
+     */
+    public int target(int element, int port) {
+        return next[link(element, port)];
+    }
+
+    /**
+     * @return input port (0 up, 1 down) through which the given output enters its target element
+     */
+    public int targetPort(int element, int port) {
+        return nextIsDown.get(link(element, port)) ? DOWN : UP;
+    }
+
+    /**
+     * @return left column element on which the given source flag enters
+     */
+    public int sourceElement(int sourceFlag) {
+        return index(sourceFlag >> 1, 0);
+    }
+
+    /**
+     * @return right column element from which the given destination flag leaves
+     */
+    public int finalElement(int destinationFlag) {
+        return index(destinationFlag >> 1, columns - 1);
+    }
+
+    /**
+     * Follow a binary code from a source flag through the fabric
+     *
+     * <p>Bit {@code k} of the code (most significant first) is 0 when stage {@code k} is crossed on the same side
+     * and 1 when it is crossed over, i.e. {@code outPort = inPort ^ bit}.</p>
+     *
+     * @param sourceFlag number from which the route starts
+     * @param code       binary code, {@link #columns} bits long
+     * @param links      if not null, receives the output link taken at every stage
+     * @return the destination flag, or {@link #NONE} if the route runs into an unwired link
+     */
+    public int walk(int sourceFlag, int code, int[] links) {
+        int element = sourceElement(sourceFlag);
+        int port = sourceFlag & 1;
+        for (int k = 0; ; k++) {
+            int out = port ^ ((code >>> (columns - 1 - k)) & 1);
+            int link = link(element, out);
+            if (links != null) {
+                links[k] = link;
+            }
+            if (k == columns - 1) {
+                return row(element) * 2 + out;
+            }
+            element = next[link];
+            if (element == NONE) {
+                return NONE;
+            }
+            port = nextIsDown.get(link) ? DOWN : UP;
+        }
+    }
+
+    /**
+     * Depth first walk over every path of one source, without allocating
+     *
+     * <p>Paths are visited up side first at every stage; paths running into unwired links are skipped.</p>
+     *
+     * @param sourceFlag number from which the paths start
+     * @param visitor    receives the code and the destination of each complete path
+     */
+    public void forEachPath(int sourceFlag, PathVisitor visitor) {
+        forEachPath(sourceElement(sourceFlag), sourceFlag & 1, 0, 0, visitor);
+    }
+
+    /**
+     * Count the paths of {@link #forEachPath(int, PathVisitor)} over every source without walking them, by adding up
+     * the paths arriving at each element one column at a time, O(size)
+     *
+     * @return number of complete paths from every source
+     */
+    public long pathCount() {
+        long[] arriving = new long[size()];
+        for (int row = 0; row < rows; row++) {                      //two sources per first column element
+            arriving[index(row, 0)] = 2;
+        }
+        long count = 0;
+        for (int column = 0; column < columns; column++) {
+            for (int row = 0; row < rows; row++) {
+                int element = index(row, column);
+                if (column == columns - 1) {
+                    count += 2 * arriving[element];                 //either output reaches a destination
+                    continue;
+                }
+                for (int port = UP; port <= DOWN; port++) {
+                    if (next[link(element, port)] != NONE) {
+                        arriving[next[link(element, port)]] += arriving[element];
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Lazy stream over every path of every source, see {@link PathSpliterator}
+     *
+     * <p>Nothing is materialised: paths are produced as the stream pulls them, and a parallel stream splits the walk
+     * by source and then by subtree.</p>
+     *
+     * @return sequential stream of the paths, up side first at every stage
+     */
+    public Stream<ValidConnection> paths() {
+        return StreamSupport.stream(new PathSpliterator(this, 0, ports()), false);
+    }
+
+    /**
+     * Lazy stream over every path of one source
+     *
+     * @param sourceFlag number from which the paths start
+     * @return sequential stream of the paths, up side first at every stage
+     */
+    public Stream<ValidConnection> paths(int sourceFlag) {
+        if (sourceFlag < 0 || sourceFlag >= ports()) {
+            throw new IllegalArgumentException("Source flag must be between 0 and " + (ports() - 1) + ", got " + sourceFlag);
+        }
+        return StreamSupport.stream(new PathSpliterator(this, sourceFlag, sourceFlag + 1), false);
+    }
+
+    /**
+     * Depth first walk over every path continuing from one element input, whose code so far is {@code code}
+     *
+     * @param element element reached so far
+     * @param port    input port of that element
+     * @param code    code bits of the stages before the element
+     * @param stage   stage (column) of the element
+     * @param visitor receives the complete code and the destination of each path
+     */
+    void forEachPath(int element, int port, int code, int stage, PathVisitor visitor) {
+
+        for (int bit = 0; bit < 2; bit++) {
+            int out = port ^ bit;
+            int nextCode = code << 1 | bit;
+            if (stage == columns - 1) {                             //final element, the code is complete
+                visitor.visit(nextCode, row(element) * 2 + out);
+            } else {
+                int link = link(element, out);
+                if (next[link] != NONE) {
+                    forEachPath(next[link], nextIsDown.get(link) ? DOWN : UP, nextCode, stage + 1, visitor);
+                }
+            }
+        }
+    }
+
+    private void checkElement(int row, int column) {
+        if (row < 0 || row >= rows || column < 0 || column >= columns) {
+            throw new IllegalArgumentException("Element " + row + "," + column + " is outside of the " + rows + "x" + columns + " fabric");
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package mpls;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.text.Font;
+
+import java.util.Arrays;
+
+/**
+ * Draws a whole fabric on two canvases instead of one scene graph node per element, link and label
+ *
+ * <p>The fabric layer is redrawn only on pan, zoom and resize. It skips everything outside of the viewport, issues
+ * all links and all elements as one path each, and lowers the level of detail as elements shrink on screen: labels
+ * go first, then elements, then every row but one per pixel. A highlighted route lives on the overlay layer above
+ * it, so changing the route redraws a handful of segments only.</p>
+ *
+ * <p>Drag to pan, scroll to zoom around the cursor.</p>
+ */
+public class FabricCanvas extends Pane {
+
+    private static final double COLUMN_SPACING = 100;              //world units between two columns
+    private static final double ROW_SPACING = 60;                   //world units between two rows
+    private static final double ELEMENT_WIDTH = 50;
+    private static final double ELEMENT_HEIGHT = 40;
+    private static final double PORT_OFFSET = 10;                   //distance of the port lines from the element edges
+    private static final double STUB_LENGTH = 20;                   //source and destination lines
+    private static final double MARGIN = 50;                        //room for the flag numbers
+    private static final double LABEL_MIN_HEIGHT = 24;              //pixels an element needs before its flags are written
+    private static final double ELEMENT_MIN_HEIGHT = 3;             //pixels an element needs before it is drawn
+    private static final double ZOOM_RATE = 0.002;                  //zoom factor per scroll pixel
+    private static final Color ROUTE_COLOR = Color.RED;
+
+    private final Fabric fabric;
+    private final Canvas fabricLayer = new Canvas();
+    private final Canvas overlayLayer = new Canvas();
+    private double scale;                                           //pixels per world unit
+    private double offsetX;                                         //screen position of the world origin
+    private double offsetY;
+    private double dragX;
+    private double dragY;
+    private int routeSource = Fabric.NONE;                          //highlighted route, if any
+    private int[] routeLinks;
+    private final int[] previous;                                   //input (element << 1 | port) -> link entering it
+    private final int leaves;                                       //rows of the segment trees, a power of two
+    private final int[][] spanStarts;                               //per column: first slot of every tree node
+    private final int[][] spanLinks;                                //per column: links stored at the tree nodes
+
+    public FabricCanvas(Fabric fabric, double width, double height) {
+
+        this.fabric = fabric;
+        this.previous = new int[fabric.size() * 2];
+        this.leaves = Integer.highestOneBit(Math.max(1, fabric.getRows() - 1)) << 1;
+        this.spanStarts = new int[fabric.getColumns() - 1][];
+        this.spanLinks = new int[fabric.getColumns() - 1][];
+        indexLinks();
+        getChildren().addAll(fabricLayer, overlayLayer);
+        setPrefSize(width, height);
+        setClip(new Rectangle(width, height));
+        fabricLayer.widthProperty().bind(widthProperty());
+        fabricLayer.heightProperty().bind(heightProperty());
+        overlayLayer.widthProperty().bind(widthProperty());
+        overlayLayer.heightProperty().bind(heightProperty());
+        overlayLayer.setMouseTransparent(true);
+
+        double worldWidth = (fabric.getColumns() - 1) * COLUMN_SPACING + ELEMENT_WIDTH + 2 * MARGIN;
+        double worldHeight = (fabric.getRows() - 1) * ROW_SPACING + ELEMENT_HEIGHT + 2 * MARGIN;
+        scale = Math.min(width / worldWidth, height / worldHeight);  //fit the whole fabric at first
+        offsetX = MARGIN * scale;
+        offsetY = MARGIN * scale;
+
+        widthProperty().addListener(observable -> redraw());
+        heightProperty().addListener(observable -> redraw());
+        addEventHandler(MouseEvent.MOUSE_PRESSED, event -> {
+            dragX = event.getX();
+            dragY = event.getY();
+        });
+        addEventHandler(MouseEvent.MOUSE_DRAGGED, event -> {
+            offsetX += event.getX() - dragX;
+            offsetY += event.getY() - dragY;
+            dragX = event.getX();
+            dragY = event.getY();
+            redraw();
+        });
+        addEventHandler(ScrollEvent.SCROLL, event -> {
+            double factor = Math.exp(event.getDeltaY() * ZOOM_RATE);
+            offsetX = event.getX() - (event.getX() - offsetX) * factor;  //keep the point under the cursor in place
+            offsetY = event.getY() - (event.getY() - offsetY) * factor;
+            scale *= factor;
+            redraw();
+        });
+    }
+
+    /**
+     * Highlight a route on the overlay, replacing the previous one
+     *
+     * @param source source flag of the route
+     * @param links  output link taken at every stage, as filled by {@link Fabric#walk(int, int, int[])}
+     */
+    public void showRoute(int source, int[] links) {
+        routeSource = source;
+        routeLinks = links.clone();
+        redrawOverlay();
+    }
+
+    public void clearRoute() {
+        routeSource = Fabric.NONE;
+        routeLinks = null;
+        redrawOverlay();
+    }
+
+    /**
+     * Redraw both layers for the current viewport
+     */
+    public void redraw() {
+        redrawFabric();
+        redrawOverlay();
+    }
+
+    private void redrawFabric() {
+
+        GraphicsContext gc = begin(fabricLayer);
+        double left = -offsetX / scale;                             //visible part of the world
+        double top = -offsetY / scale;
+        double right = left + getWidth() / scale;
+        double bottom = top + getHeight() / scale;
+        int firstColumn = Math.max(0, (int) Math.floor((left - ELEMENT_WIDTH - STUB_LENGTH) / COLUMN_SPACING));
+        int lastColumn = Math.min(fabric.getColumns() - 1, (int) Math.floor((right + STUB_LENGTH) / COLUMN_SPACING));
+        int firstRow = Math.max(0, (int) Math.floor((top - ELEMENT_HEIGHT) / ROW_SPACING));
+        int lastRow = Math.min(fabric.getRows() - 1, (int) Math.floor(bottom / ROW_SPACING));
+        if (firstColumn > lastColumn || firstRow > lastRow) {
+            return;
+        }
+        double elementPixels = ELEMENT_HEIGHT * scale;
+        int step = Math.max(1, (int) Math.ceil(1 / (ROW_SPACING * scale)));  //rows sharing one pixel are drawn once
+
+        gc.setStroke(Color.BLACK);
+        gc.setLineWidth(1 / scale);
+        gc.beginPath();
+        for (int column = 0; column < fabric.getColumns() - 1; column++) {
+            if ((column + 1) * COLUMN_SPACING < left || column * COLUMN_SPACING + ELEMENT_WIDTH > right) {
+                continue;
+            }
+            int[] starts = spanStarts[column];
+            for (int node = leaves + firstRow; node > 0; node >>= 1) { //links spanning the first visible row
+                for (int i = starts[node]; i < starts[node + 1]; i++) {
+                    drawLink(gc, column, spanLinks[column][i], top, bottom);
+                }
+            }
+            for (int row = firstRow + 1; row <= lastRow; row += step) {  //and links whose upper end is a later one
+                for (int port = Fabric.UP; port <= Fabric.DOWN; port++) {
+                    int link = Fabric.link(fabric.index(row, column), port);
+                    if (fabric.getNext()[link] != Fabric.NONE && fabric.row(fabric.getNext()[link]) >= row) {
+                        drawLink(gc, column, link, top, bottom);
+                    }
+                    link = previous[Fabric.link(fabric.index(row, column + 1), port)];
+                    if (link != Fabric.NONE && fabric.row(link >> 1) > row) {
+                        drawLink(gc, column, link, top, bottom);
+                    }
+                }
+            }
+        }
+        for (int row = firstRow - firstRow % step; row <= lastRow; row += step) {  //source and destination lines
+            for (int port = Fabric.UP; port <= Fabric.DOWN; port++) {
+                double y = portY(row, port);
+                if (firstColumn == 0) {
+                    gc.moveTo(-STUB_LENGTH, y);
+                    gc.lineTo(0, y);
+                }
+                if (lastColumn == fabric.getColumns() - 1) {
+                    double x = (fabric.getColumns() - 1) * COLUMN_SPACING + ELEMENT_WIDTH;
+                    gc.moveTo(x, y);
+                    gc.lineTo(x + STUB_LENGTH, y);
+                }
+            }
+        }
+        gc.stroke();
+
+        if (elementPixels >= ELEMENT_MIN_HEIGHT) {
+            gc.setFill(Main.RECT_FILL_COLOR);
+            gc.beginPath();
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                for (int row = firstRow; row <= lastRow; row++) {
+                    gc.rect(column * COLUMN_SPACING, row * ROW_SPACING, ELEMENT_WIDTH, ELEMENT_HEIGHT);
+                }
+            }
+            gc.fill();
+        }
+
+        if (elementPixels >= LABEL_MIN_HEIGHT) {
+            gc.setFill(Color.BLACK);
+            gc.setFont(Font.font("arial", PORT_OFFSET * 1.6));
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int port = Fabric.UP; port <= Fabric.DOWN; port++) {
+                    String flag = Integer.toString(row * 2 + port);
+                    double y = portY(row, port) + PORT_OFFSET / 2;
+                    if (firstColumn == 0) {
+                        gc.fillText(flag, -STUB_LENGTH - MARGIN / 2, y);
+                    }
+                    if (lastColumn == fabric.getColumns() - 1) {
+                        gc.fillText(flag, (fabric.getColumns() - 1) * COLUMN_SPACING + ELEMENT_WIDTH + STUB_LENGTH + 5, y);
+                    }
+                }
+            }
+        }
+    }
+
+    private void drawLink(GraphicsContext gc, int column, int link, double top, double bottom) {
+        int element = link >> 1;
+        int port = link & 1;
+        double startY = portY(fabric.row(element), port);
+        double endY = portY(fabric.row(fabric.target(element, port)), fabric.targetPort(element, port));
+        if (Math.max(startY, endY) < top || Math.min(startY, endY) > bottom) {
+            return;
+        }
+        gc.moveTo(column * COLUMN_SPACING + ELEMENT_WIDTH, startY);
+        gc.lineTo((column + 1) * COLUMN_SPACING, endY);
+    }
+
+    /**
+     * Index the links out of every column by the rows they span, so a redraw only visits the links crossing the
+     * visible rows
+     *
+     * <p>{@link #previous} finds the link entering an input, so the links ending in a row are found as cheaply as
+     * the ones starting there. Links spanning a row without ending in it are kept in a segment tree over the rows:
+     * each link is stored at the O(log rows) nodes covering its span exactly, so the nodes on the way from a row's
+     * leaf to the root hold every link spanning that row, each once.</p>
+     */
+    private void indexLinks() {
+
+        Arrays.fill(previous, Fabric.NONE);
+        for (int link = 0; link < previous.length; link++) {
+            int target = fabric.getNext()[link];
+            if (target != Fabric.NONE) {
+                previous[Fabric.link(target, fabric.targetPort(link >> 1, link & 1))] = link;
+            }
+        }
+        for (int column = 0; column < fabric.getColumns() - 1; column++) {
+            int[] starts = new int[2 * leaves + 1];
+            for (int pass = 0; pass < 2; pass++) {                  //count the links of every node, then place them
+                int[] cursor = pass == 0 ? starts : starts.clone();
+                for (int row = 0; row < fabric.getRows(); row++) {
+                    for (int port = Fabric.UP; port <= Fabric.DOWN; port++) {
+                        int link = Fabric.link(fabric.index(row, column), port);
+                        int target = fabric.getNext()[link];
+                        if (target != Fabric.NONE) {
+                            cover(Math.min(row, fabric.row(target)), Math.max(row, fabric.row(target)), cursor,
+                                    pass == 0 ? null : spanLinks[column], link);
+                        }
+                    }
+                }
+                if (pass == 0) {
+                    for (int node = 1; node < starts.length; node++) {
+                        starts[node] += starts[node - 1];
+                    }
+                    spanLinks[column] = new int[starts[starts.length - 1]];
+                }
+            }
+            spanStarts[column] = starts;
+        }
+    }
+
+    /**
+     * Count or store a link at the segment tree nodes covering the rows {@code [lo, hi]}
+     *
+     * @param cursor node counts, shifted by one, while counting, else the next free slot of every node
+     * @param links  links of the column, or null to count
+     */
+    private void cover(int lo, int hi, int[] cursor, int[] links, int link) {
+        for (int l = leaves + lo, r = leaves + hi + 1; l < r; l >>= 1, r >>= 1) {
+            if ((l & 1) == 1) {
+                place(l++, cursor, links, link);
+            }
+            if ((r & 1) == 1) {
+                place(--r, cursor, links, link);
+            }
+        }
+    }
+
+    private static void place(int node, int[] cursor, int[] links, int link) {
+        if (links == null) {
+            cursor[node + 1]++;
+        } else {
+            links[cursor[node]++] = link;
+        }
+    }
+
+    private void redrawOverlay() {
+
+        GraphicsContext gc = begin(overlayLayer);
+        if (routeLinks == null) {
+            return;
+        }
+        int columns = fabric.getColumns();
+        gc.setStroke(ROUTE_COLOR);
+        gc.setLineWidth(Main.boldLineStrokeWidth / scale);
+        gc.beginPath();
+        double sourceY = portY(routeSource >> 1, routeSource & 1);
+        gc.moveTo(-STUB_LENGTH, sourceY);
+        gc.lineTo(0, sourceY);
+        for (int k = 0; k < columns - 1; k++) {
+            int element = routeLinks[k] >> 1;
+            int port = routeLinks[k] & 1;
+            int target = fabric.target(element, port);
+            gc.moveTo(k * COLUMN_SPACING + ELEMENT_WIDTH, portY(fabric.row(element), port));
+            gc.lineTo((k + 1) * COLUMN_SPACING, portY(fabric.row(target), fabric.targetPort(element, port)));
+        }
+        int last = routeLinks[columns - 1];
+        double destinationY = portY(fabric.row(last >> 1), last & 1);
+        double x = (columns - 1) * COLUMN_SPACING + ELEMENT_WIDTH;
+        gc.moveTo(x, destinationY);
+        gc.lineTo(x + STUB_LENGTH, destinationY);
+        gc.stroke();
+    }
+
+    /**
+     * Clear a layer and set it up to draw in world units
+     */
+    private GraphicsContext begin(Canvas layer) {
+        GraphicsContext gc = layer.getGraphicsContext2D();
+        gc.setTransform(1, 0, 0, 1, 0, 0);
+        gc.clearRect(0, 0, layer.getWidth(), layer.getHeight());
+        gc.setTransform(scale, 0, 0, scale, offsetX, offsetY);
+        return gc;
+    }
+
+    /**
+     * @return world height of the up (0) or down (1) port line of a row
+     */
+    private static double portY(int row, int port) {
+        return row * ROW_SPACING + (port == Fabric.UP ? PORT_OFFSET : ELEMENT_HEIGHT - PORT_OFFSET);
+    }
+}
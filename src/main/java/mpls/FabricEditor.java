@@ -0,0 +1,240 @@
+package mpls;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * Working copy of a fabric that keeps its route table and validation up to date one edited link at a time
+ *
+ * <p>Rewiring the output of an element only changes the codes whose path crosses that output. Those are found by
+ * walking back from the element to every source that reaches it, and only their suffixes are walked again; then only
+ * the forward rows and reachability rows of those sources are rebuilt. The tables always equal what
+ * {@link RouteTable#build(Fabric)} and {@link Validator#validate(Fabric)} would compute for the current wiring.</p>
+ */
+public class FabricEditor {
+
+    private final Fabric fabric;
+    private final int ports;
+    private final int codeBits;
+    private final int words;
+    private final int[] codes;                                      //same layout as RouteTable
+    private final int[] destinations;
+    private final long[] reached;                                   //same layout as ValidationResult
+    private final long[] duplicate;
+    private final int[] firstIn;                                    //first link entering each element input, or NONE
+    private final int[] nextIn;                                     //next link entering the same input, or NONE
+    private final int[] counts;                                     //scratch, paths per destination of one source
+    private final int[] affected;                                   //scratch, sources touched by the current edit
+    private final int[] affectedStamp;
+    private int affectedCount;
+    private int generation;
+    @Getter
+    private int missingCount;
+    @Getter
+    private int duplicateCount;
+
+    private int editStage;                                          //context of the edit being applied
+    private int editPort;
+    private int editTarget;
+    private int editTargetPort;
+
+    /**
+     * @param fabric wiring to start from; it is copied, later edits never touch it
+     */
+    public FabricEditor(Fabric fabric) {
+
+        this.fabric = fabric.copy();
+        this.ports = fabric.ports();
+        this.codeBits = fabric.getColumns();
+        this.words = ValidationResult.words(ports);
+        RouteTable table = RouteTable.build(this.fabric);
+        this.codes = table.getCodes();
+        this.destinations = table.getDestinations();
+        this.reached = new long[ports * words];
+        this.duplicate = new long[ports * words];
+        this.counts = new int[ports];
+        this.affected = new int[ports];
+        this.affectedStamp = new int[ports];
+        this.missingCount = ports * ports;
+
+        this.firstIn = new int[fabric.size() * 2];
+        this.nextIn = new int[fabric.size() * 2];
+        Arrays.fill(firstIn, Fabric.NONE);
+        for (int link = 0; link < nextIn.length; link++) {
+            int target = this.fabric.getNext()[link];
+            if (target != Fabric.NONE) {
+                addIn(link, Fabric.link(target, this.fabric.targetPort(link >> 1, link & 1)));
+            }
+        }
+        for (int source = 0; source < ports; source++) {
+            reindex(source);
+        }
+    }
+
+    /**
+     * Point the output {@code port} of one element at another element input, updating only the affected routes
+     */
+    public void rewire(int row, int column, int port, int targetRow, int targetColumn, int targetPort) {
+
+        int element = fabric.index(row, column);
+        int link = Fabric.link(element, port);
+        int oldTarget = fabric.getNext()[link];
+        int oldInput = oldTarget == Fabric.NONE ? Fabric.NONE : Fabric.link(oldTarget, fabric.targetPort(element, port));
+        fabric.connect(row, column, port, targetRow, targetColumn, targetPort);
+        int newInput = Fabric.link(fabric.getNext()[link], targetPort);
+        if (newInput == oldInput) {
+            return;
+        }
+        if (oldInput != Fabric.NONE) {
+            removeIn(link, oldInput);
+        }
+        addIn(link, newInput);
+
+        generation++;
+        affectedCount = 0;
+        editStage = column;
+        editPort = port;
+        editTarget = newInput >> 1;
+        editTargetPort = newInput & 1;
+        if (column == 0) {                                          //the element is fed by its own two sources
+            refill(row * 2, 0, Fabric.UP);
+            refill(row * 2 + 1, 0, Fabric.DOWN);
+        } else {
+            for (int inPort = Fabric.UP; inPort <= Fabric.DOWN; inPort++) {
+                for (int in = firstIn[Fabric.link(element, inPort)]; in != Fabric.NONE; in = nextIn[in]) {
+                    back(in >> 1, in & 1, 0, 0, inPort);
+                }
+            }
+        }
+        for (int i = 0; i < affectedCount; i++) {
+            reindex(affected[i]);
+        }
+    }
+
+    public Fabric getFabric() {
+        return fabric;
+    }
+
+    /**
+     * @return the code leading from source to destination in the current wiring, or {@link Router#NO_ROUTE}, also
+     * when either flag is outside of {@code [0, ports)}
+     */
+    public int route(int source, int destination) {
+        if (source < 0 || source >= ports || destination < 0 || destination >= ports) {  //would read another row
+            return Router.NO_ROUTE;
+        }
+        return codes[source * ports + destination];
+    }
+
+    public boolean isValid() {
+        return missingCount == 0 && duplicateCount == 0;
+    }
+
+    /**
+     * @return an independent topology of the current wiring, e.g. to publish it
+     */
+    public Topology snapshot() {
+        Fabric copy = fabric.copy();
+        return new Topology(copy, new RouteTable(copy, codes.clone(), destinations.clone()),
+                new ValidationResult(ports, reached.clone(), duplicate.clone()));
+    }
+
+    /**
+     * Walk back from the output {@code out} of element {@code element} towards the sources, collecting code bits
+     *
+     * @param element       element on the way back
+     * @param out           output of that element leading towards the edited element
+     * @param suffix        code bits between this element (excluded) and the edited element (excluded)
+     * @param suffixLength  number of those bits
+     * @param arrivingPort  input through which the walk reaches the edited element
+     */
+    private void back(int element, int out, int suffix, int suffixLength, int arrivingPort) {
+
+        if (fabric.column(element) == 0) {
+            for (int inPort = Fabric.UP; inPort <= Fabric.DOWN; inPort++) {
+                int prefix = ((inPort ^ out) << suffixLength) | suffix;
+                refill(fabric.row(element) * 2 + inPort, prefix, arrivingPort);
+            }
+            return;
+        }
+        for (int inPort = Fabric.UP; inPort <= Fabric.DOWN; inPort++) {
+            int bit = (inPort ^ out) << suffixLength;
+            for (int in = firstIn[Fabric.link(element, inPort)]; in != Fabric.NONE; in = nextIn[in]) {
+                back(in >> 1, in & 1, bit | suffix, suffixLength + 1, arrivingPort);
+            }
+        }
+    }
+
+    /**
+     * Walk again every code of a source that starts with the given prefix and leaves the edited element through the
+     * edited output
+     */
+    private void refill(int source, int prefix, int arrivingPort) {
+
+        int rest = codeBits - 1 - editStage;                        //bits after the edited element
+        int head = prefix << 1 | (arrivingPort ^ editPort);
+        int base = source << codeBits;
+        int from = base | head << rest;
+        Arrays.fill(destinations, from, from + (1 << rest), Fabric.NONE);
+        fabric.forEachPath(editTarget, editTargetPort, head, editStage + 1, (code, destination) -> destinations[base | code] = destination);
+
+        if (affectedStamp[source] != generation) {
+            affectedStamp[source] = generation;
+            affected[affectedCount++] = source;
+        }
+    }
+
+    /**
+     * Rebuild the forward row and the reachability rows of one source out of its reverse index
+     */
+    private void reindex(int source) {
+
+        int row = source * ports;
+        int base = source << codeBits;
+        Arrays.fill(codes, row, row + ports, Router.NO_ROUTE);
+        Arrays.fill(counts, 0);
+        for (int code = 0; code < 1 << codeBits; code++) {
+            int destination = destinations[base | code];
+            if (destination != Fabric.NONE && counts[destination]++ == 0) {
+                codes[row + destination] = code;
+            }
+        }
+
+        int offset = source * words;
+        for (int i = offset; i < offset + words; i++) {
+            missingCount += Long.bitCount(reached[i]);
+            duplicateCount -= Long.bitCount(duplicate[i]);
+            reached[i] = 0;
+            duplicate[i] = 0;
+        }
+        for (int destination = 0; destination < ports; destination++) {
+            if (counts[destination] > 0) {
+                reached[offset + (destination >>> 6)] |= 1L << destination;
+                missingCount--;
+            }
+            if (counts[destination] > 1) {
+                duplicate[offset + (destination >>> 6)] |= 1L << destination;
+                duplicateCount++;
+            }
+        }
+    }
+
+    private void addIn(int link, int input) {
+        nextIn[link] = firstIn[input];
+        firstIn[input] = link;
+    }
+
+    private void removeIn(int link, int input) {
+        if (firstIn[input] == link) {
+            firstIn[input] = nextIn[link];
+            return;
+        }
+        for (int in = firstIn[input]; in != Fabric.NONE; in = nextIn[in]) {
+            if (nextIn[in] == link) {
+                nextIn[in] = nextIn[link];
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package mpls;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Finds the (source, destination) pairs that lose their paths when a single internal link fails
+ *
+ * <p>Reachability is computed once for the whole fabric as bit rows, in one sweep per direction:
+ * {@code reach[element]} holds the sources with a path to an element and {@code leads[element]} the destinations it
+ * has a path to. Pair {@code (s, d)} crosses link {@code (e, p)} when {@code s} is in {@code reach[e]} and {@code d} in
+ * {@code leads[target]}. Every path crosses each column boundary on exactly one link, so the pair is lost exactly when
+ * no other link out of the same column carries it. The pairs carried by two or more links are gathered per column, and
+ * the links of that column are then analysed in parallel against them, without enumerating any path.</p>
+ *
+ * <p>The tables take {@code size * ports / 4} bytes and the per column pairs {@code ports * ports / 4}, about 50 MB and
+ * 4 MB for a 4096 port Benes fabric. Path counts are only needed by {@link #pathCount(int, int)} and are computed on
+ * demand.</p>
+ */
+public class FailureAnalyzer {
+
+    @Getter
+    private final Fabric fabric;
+    private final int ports;
+    private final int words;                                        //longs per bit row
+    private final long[] reach;                                     //element * words -> sources arriving
+    private final long[] leads;                                     //element * words -> destinations reached
+
+    public FailureAnalyzer(Fabric fabric) {
+        this.fabric = fabric;
+        this.ports = fabric.ports();
+        this.words = (ports + 63) >>> 6;
+        this.reach = new long[fabric.size() * words];
+        this.leads = new long[fabric.size() * words];
+        int columns = fabric.getColumns();
+
+        for (int source = 0; source < ports; source++) {
+            reach[fabric.sourceElement(source) * words + (source >>> 6)] |= 1L << source;
+        }
+        for (int column = 0; column < columns - 1; column++) {     //left to right: arriving sources
+            for (int row = 0; row < fabric.getRows(); row++) {
+                int element = fabric.index(row, column);
+                for (int port = Fabric.UP; port <= Fabric.DOWN; port++) {
+                    int target = fabric.target(element, port);
+                    if (target != Fabric.NONE) {
+                        or(reach, element, target);
+                    }
+                }
+            }
+        }
+        for (int row = 0; row < fabric.getRows(); row++) {
+            int element = fabric.index(row, columns - 1);
+            leads[element * words + (row >>> 5)] |= 3L << (row * 2);
+        }
+        for (int column = columns - 2; column >= 0; column--) {     //right to left: destinations reached
+            for (int row = 0; row < fabric.getRows(); row++) {
+                int element = fabric.index(row, column);
+                for (int port = Fabric.UP; port <= Fabric.DOWN; port++) {
+                    int target = fabric.target(element, port);
+                    if (target != Fabric.NONE) {
+                        or(leads, target, element);
+                    }
+                }
+            }
+        }
+    }
+
+    private void or(long[] sets, int from, int to) {
+        for (int word = 0; word < words; word++) {
+            sets[to * words + word] |= sets[from * words + word];
+        }
+    }
+
+    private static boolean has(long[] sets, int row, int words, int flag) {
+        return (sets[row * words + (flag >>> 6)] & 1L << flag) != 0;
+    }
+
+    /**
+     * Count the paths by a forward sweep from the source, O(size)
+     *
+     * @return number of paths from the source flag to the destination flag
+     */
+    public int pathCount(int source, int destination) {
+
+        if (!has(leads, fabric.sourceElement(source), words, destination)) {
+            return 0;
+        }
+        int[] arriving = new int[fabric.size()];
+        arriving[fabric.sourceElement(source)] = 1;
+        for (int column = 0; column < fabric.getColumns() - 1; column++) {
+            for (int row = 0; row < fabric.getRows(); row++) {
+                int element = fabric.index(row, column);
+                if (arriving[element] == 0) {
+                    continue;
+                }
+                for (int port = Fabric.UP; port <= Fabric.DOWN; port++) {
+                    int target = fabric.target(element, port);
+                    if (target != Fabric.NONE && has(leads, target, words, destination)) {
+                        arriving[target] += arriving[element];
+                    }
+                }
+            }
+        }
+        return arriving[fabric.index(destination >> 1, fabric.getColumns() - 1)];
+    }
+
+    /**
+     * @return whether every pair has at least one path before any failure
+     */
+    public boolean isFullAccess() {
+        for (int source = 0; source < ports; source++) {
+            int element = fabric.sourceElement(source);
+            for (int destination = 0; destination < ports; destination++) {
+                if (!has(leads, element, words, destination)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Analyse every wired internal link, one column at a time, the links of a column in parallel
+     *
+     * @return one result per wired link, in increasing link order
+     */
+    public FailureResult[] analyzeAll() {
+
+        boolean fullAccess = isFullAccess();
+        int columns = fabric.getColumns();
+        FailureResult[] results = new FailureResult[fabric.size() * 2];
+        for (int column = 0; column < columns - 1; column++) {
+            long[] shared = shared(column);
+            int linkColumn = column;
+            IntStream.range(0, fabric.ports())
+                    .map(flag -> Fabric.link(fabric.index(flag >> 1, linkColumn), flag & 1))
+                    .filter(link -> fabric.getNext()[link] != Fabric.NONE)
+                    .parallel()
+                    .forEach(link -> results[link] = analyze(link, fullAccess, shared));
+        }
+        return Arrays.stream(results).filter(result -> result != null).toArray(FailureResult[]::new);
+    }
+
+    /**
+     * @param link wired internal link, see {@link Fabric#link(int, int)}
+     * @return the pairs lost and rerouted when the link fails
+     */
+    public FailureResult analyze(int link) {
+        if (link < 0 || link >= fabric.size() * 2 || fabric.getNext()[link] == Fabric.NONE) {
+            throw new IllegalArgumentException("Link " + link + " is not wired");
+        }
+        return analyze(link, isFullAccess(), shared(fabric.column(link >> 1)));
+    }
+
+    /**
+     * Gather the pairs carried by more than one link out of a column
+     *
+     * @return per source, the bit row of destinations reached over two or more links of the column
+     */
+    private long[] shared(int column) {
+
+        long[] once = new long[ports * words];
+        long[] twice = new long[ports * words];
+        for (int row = 0; row < fabric.getRows(); row++) {
+            int element = fabric.index(row, column);
+            for (int port = Fabric.UP; port <= Fabric.DOWN; port++) {
+                int target = fabric.target(element, port);
+                if (target == Fabric.NONE) {
+                    continue;
+                }
+                for (int source : flags(reach, element)) {
+                    for (int word = 0; word < words; word++) {
+                        long destinations = leads[target * words + word];
+                        twice[source * words + word] |= once[source * words + word] & destinations;
+                        once[source * words + word] |= destinations;
+                    }
+                }
+            }
+        }
+        return twice;
+    }
+
+    private FailureResult analyze(int link, boolean fullAccess, long[] shared) {
+
+        int element = link >> 1;
+        int target = fabric.getNext()[link];
+        int[] sources = flags(reach, element);
+        int[] destinations = flags(leads, target);
+        int lostCount = 0;
+        for (int source : sources) {                                //size the results first, they can be large
+            for (int word = 0; word < words; word++) {
+                lostCount += Long.bitCount(leads[target * words + word] & ~shared[source * words + word]);
+            }
+        }
+        int[] lost = new int[lostCount];
+        int[] rerouted = new int[sources.length * destinations.length - lostCount];
+        int[] alternates = new int[rerouted.length];
+        lostCount = 0;
+        int reroutedCount = 0;
+        int[] code = new int[1];
+        for (int source : sources) {
+            for (int destination : destinations) {
+                int pair = source * ports + destination;
+                if (!has(shared, source, words, destination)) {
+                    lost[lostCount++] = pair;
+                } else {
+                    rerouted[reroutedCount] = pair;
+                    alternate(link, destination, fabric.sourceElement(source), source & 1, 0, code, 0, 1);
+                    alternates[reroutedCount++] = code[0];
+                }
+            }
+        }
+        return new FailureResult(link, ports, lost, rerouted, alternates, fullAccess && lostCount == 0);
+    }
+
+    /**
+     * @return every code from the source to the destination that avoids the failed link, in increasing order
+     */
+    public int[] alternateRoutes(int link, int source, int destination) {
+        int[] codes = new int[pathCount(source, destination)];
+        int count = alternate(link, destination, fabric.sourceElement(source), source & 1, 0, codes, 0, codes.length);
+        return Arrays.copyOf(codes, count);
+    }
+
+    /**
+     * Depth first search for paths to one destination that avoid a link, pruned to the elements that still lead
+     * there, lowest bit first
+     *
+     * @return number of codes in {@code codes} once the search stops at {@code limit}
+     */
+    private int alternate(int avoid, int destination, int element, int port, int code,
+                          int[] codes, int count, int limit) {
+
+        for (int bit = 0; bit < 2 && count < limit; bit++) {
+            int out = port ^ bit;
+            if (fabric.isFinal(element)) {
+                if (fabric.row(element) * 2 + out == destination) {
+                    codes[count++] = code << 1 | bit;
+                }
+                continue;
+            }
+            int link = Fabric.link(element, out);
+            int target = fabric.getNext()[link];
+            if (link != avoid && target != Fabric.NONE && has(leads, target, words, destination)) {
+                count = alternate(avoid, destination, target, fabric.getNextIsDown().get(link) ? Fabric.DOWN : Fabric.UP,
+                        code << 1 | bit, codes, count, limit);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the flags set in an element's bit row, in increasing order
+     */
+    private int[] flags(long[] sets, int element) {
+        int[] flags = new int[ports];
+        int count = 0;
+        for (int word = 0; word < words; word++) {
+            for (long bits = sets[element * words + word]; bits != 0; bits &= bits - 1) {
+                flags[count++] = word << 6 | Long.numberOfTrailingZeros(bits);
+            }
+        }
+        return Arrays.copyOf(flags, count);
+    }
+}
@@ -0,0 +1,55 @@
+package mpls;
+
+import lombok.Getter;
+
+/**
+ * Impact of a single failed internal link, found by {@link FailureAnalyzer}
+ *
+ * <p>Pairs are numbered {@code source * ports + destination}.</p>
+ */
+@Getter
+public class FailureResult {
+
+    private final int link;                                         //failed link, see Fabric#link(int, int)
+    private final int ports;
+    private final int[] lostPairs;                                  //pairs whose every path crosses the link
+    private final int[] reroutedPairs;                              //pairs crossing the link that keep another path
+    private final int[] alternateCodes;                             //smallest surviving code of each rerouted pair
+    private final boolean fullAccess;                               //whether every pair is still connected
+
+    public FailureResult(int link, int ports, int[] lostPairs, int[] reroutedPairs, int[] alternateCodes, boolean fullAccess) {
+        this.link = link;
+        this.ports = ports;
+        this.lostPairs = lostPairs;
+        this.reroutedPairs = reroutedPairs;
+        this.alternateCodes = alternateCodes;
+        this.fullAccess = fullAccess;
+    }
+
+    /**
+     * @return number of pairs with at least one path across the link
+     */
+    public int getAffectedCount() {
+        return lostPairs.length + reroutedPairs.length;
+    }
+
+    public int source(int pair) {
+        return pair / ports;
+    }
+
+    public int destination(int pair) {
+        return pair % ports;
+    }
+
+    /**
+     * @return human readable summary, one line per lost pair
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder("Element " + (link >> 1) + (link % 2 == Fabric.UP ? " up" : " down") + " link: "
+                + lostPairs.length + " pairs lost, " + reroutedPairs.length + " rerouted.\n");
+        for (int pair : lostPairs) {
+            report.append("Source ").append(source(pair)).append(" cannot reach ").append(destination(pair)).append("\n");
+        }
+        return report.toString();
+    }
+}
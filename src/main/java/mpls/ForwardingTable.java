@@ -0,0 +1,128 @@
+package mpls;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * Compiled per-stage label forwarding tables (LFIB) of a fabric, for forwarding packets in bulk
+ *
+ * <p>A packet is described by its current input and its label. The input of stage {@code k} is numbered
+ * {@code row * 2 + inPort}, so the input of stage 0 is the source flag. The label is the rest of the route code,
+ * leading bit first. Stage {@code k} maps {@code (input, label bit)} to the input of stage {@code k + 1}, and the final
+ * stage maps it to the destination flag. The output port is always {@code inPort ^ bit}, and the next label is the
+ * label shifted left by one bit.</p>
+ *
+ * <p>Packets that run into an unwired link are parked on a dead input, {@link #ports}, which maps to itself at every
+ * stage. This keeps the batch loops free of branches, and the dead input is reported as {@link Fabric#NONE} at the
+ * end.</p>
+ */
+@Getter
+public class ForwardingTable {
+
+    private final Fabric fabric;
+    private final int ports;
+    private final int stages;
+    private final int labelMask;
+    private final int[][] next;                                     //per stage: (input << 1 | bit) -> next input
+
+    private ForwardingTable(Fabric fabric) {
+        this.fabric = fabric;
+        this.ports = fabric.ports();
+        this.stages = fabric.getColumns();
+        this.labelMask = stages == Integer.SIZE ? -1 : (1 << stages) - 1;
+        this.next = new int[stages][(ports + 1) * 2];
+    }
+
+    /**
+     * @param fabric wired fabric
+     * @return the forwarding tables of every stage
+     */
+    public static ForwardingTable compile(Fabric fabric) {
+
+        ForwardingTable table = new ForwardingTable(fabric);
+        int dead = table.ports;
+        for (int stage = 0; stage < table.stages; stage++) {
+            int[] entries = table.next[stage];
+            Arrays.fill(entries, dead);
+            for (int row = 0; row < fabric.getRows(); row++) {
+                int element = fabric.index(row, stage);
+                for (int in = Fabric.UP; in <= Fabric.DOWN; in++) {
+                    for (int bit = 0; bit < 2; bit++) {
+                        int out = in ^ bit;
+                        int entry;
+                        if (stage == table.stages - 1) {
+                            entry = row * 2 + out;                  //destination flag
+                        } else if (fabric.target(element, out) == Fabric.NONE) {
+                            entry = dead;
+                        } else {
+                            entry = fabric.row(fabric.target(element, out)) * 2 + fabric.targetPort(element, out);
+                        }
+                        entries[(row * 2 + in) << 1 | bit] = entry;
+                    }
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Look up a single entry of the table
+     *
+     * @param stage stage (column) of the element
+     * @param input {@code row * 2 + inPort} within that stage
+     * @param label current label, its leading bit picks the output
+     * @return input of the next stage, the destination flag at the final stage, or {@link #ports} if the link is unwired
+     */
+    public int lookup(int stage, int input, int label) {
+        return next[stage][input << 1 | (label >>> (stages - 1)) & 1];
+    }
+
+    /**
+     * @return the label carried to the next stage, with the leading bit consumed
+     */
+    public int swap(int label) {
+        return (label << 1) & labelMask;
+    }
+
+    /**
+     * Forward one packet through every stage
+     *
+     * @param sourceFlag number from which the packet starts
+     * @param label      route code of the packet
+     * @return the destination flag, or {@link Fabric#NONE} if the packet runs into an unwired link
+     */
+    public int forward(int sourceFlag, int label) {
+        int input = sourceFlag;
+        for (int stage = 0; stage < stages; stage++) {
+            input = next[stage][input << 1 | (label >>> (stages - 1)) & 1];
+            label = (label << 1) & labelMask;
+        }
+        return input == ports ? Fabric.NONE : input;
+    }
+
+    /**
+     * Forward a batch of packets stage by stage, in place and without allocating
+     *
+     * @param inputs on entry the source flag of each packet, on return its destination flag or {@link Fabric#NONE}
+     * @param labels on entry the route code of each packet, on return the swapped (spent) labels
+     * @param count  number of packets, starting at index 0
+     */
+    public void forward(int[] inputs, int[] labels, int count) {
+
+        int shift = stages - 1;
+        for (int stage = 0; stage < stages; stage++) {
+            int[] entries = next[stage];
+            for (int i = 0; i < count; i++) {
+                int label = labels[i];
+                inputs[i] = entries[inputs[i] << 1 | (label >>> shift) & 1];
+                labels[i] = (label << 1) & labelMask;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            if (inputs[i] == ports) {
+                inputs[i] = Fabric.NONE;
+            }
+        }
+    }
+}
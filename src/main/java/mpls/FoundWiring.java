@@ -0,0 +1,33 @@
+package mpls;
+
+import lombok.Getter;
+
+/**
+ * A valid wiring produced by {@link WiringSearch}, with the figures that tell wirings apart
+ */
+@Getter
+public class FoundWiring {
+
+    public static final int MAX_COUNTED_PORTS = 8;                  //admissible permutations are counted up to here
+
+    private final Fabric fabric;
+    private final boolean selfRoutable;                             //whether destination tag routing applies
+    private final long admissiblePermutations;                      //permutations routed without conflicts, -1 if not counted
+
+    public FoundWiring(Fabric fabric, boolean selfRoutable, long admissiblePermutations) {
+        this.fabric = fabric;
+        this.selfRoutable = selfRoutable;
+        this.admissiblePermutations = admissiblePermutations;
+    }
+
+    /**
+     * @param fabric valid wiring
+     * @return the wiring and its figures
+     */
+    public static FoundWiring of(Fabric fabric) {
+        SelfRouter selfRouter = SelfRouter.of(fabric);
+        long admissible = fabric.ports() <= MAX_COUNTED_PORTS
+                ? new PermutationAnalyzer(selfRouter != null ? selfRouter : RouteTable.build(fabric)).countAdmissible() : -1;
+        return new FoundWiring(fabric, selfRouter != null, admissible);
+    }
+}
@@ -0,0 +1,37 @@
+package mpls;
+
+import java.util.Arrays;
+
+/**
+ * Entry point of the jar: the visualizer by default, or one of the headless modes named by the first argument
+ *
+ * <p>It does not extend {@link javafx.application.Application} itself, so the headless modes start without a JavaFX
+ * runtime or a display.</p>
+ * <pre>
+ * java -jar mpls.jar                  visualizer
+ * java -jar mpls.jar serve [options]  {@link RouteServer}
+ * java -jar mpls.jar route [options]  {@link BatchRouter}
+ * java -jar mpls.jar search [options] {@link WiringSearch}
+ * </pre>
+ */
+public class Launcher {
+
+    public static void main(String[] args) throws Exception {
+
+        String mode = args.length > 0 ? args[0] : "";
+        String[] options = args.length > 0 ? Arrays.copyOfRange(args, 1, args.length) : args;
+        switch (mode) {
+            case "serve":
+                RouteServer.main(options);
+                break;
+            case "route":
+                BatchRouter.main(options);
+                break;
+            case "search":
+                WiringSearch.main(options);
+                break;
+            default:
+                Main.main(args);
+        }
+    }
+}
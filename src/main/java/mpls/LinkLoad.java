@@ -0,0 +1,76 @@
+package mpls;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * Traffic carried by every internal link of a fabric, computed by {@link LinkLoadAnalyzer}
+ */
+@Getter
+public class LinkLoad {
+
+    private final Fabric fabric;
+    private final double[] load;                                    //per link, see Fabric#link(int, int)
+
+    public LinkLoad(Fabric fabric, double[] load) {
+        this.fabric = fabric;
+        this.load = load;
+    }
+
+    /**
+     * @return the wired internal links, the only ones that carry traffic between columns
+     */
+    private IntStream internalLinks() {
+        return IntStream.range(0, load.length).filter(link -> fabric.getNext()[link] != Fabric.NONE);
+    }
+
+    public double getMax() {
+        return internalLinks().mapToDouble(link -> load[link]).max().orElse(0);
+    }
+
+    public double getMean() {
+        return internalLinks().mapToDouble(link -> load[link]).average().orElse(0);
+    }
+
+    /**
+     * @return maximum over mean load, 1 for a perfectly balanced fabric
+     */
+    public double getImbalance() {
+        double mean = getMean();
+        return mean == 0 ? 0 : getMax() / mean;
+    }
+
+    /**
+     * @param count number of links wanted
+     * @return the most loaded internal links, heaviest first
+     */
+    public int[] hottest(int count) {
+        return internalLinks().boxed()
+                .sorted(Comparator.comparingDouble((Integer link) -> load[link]).reversed().thenComparing(link -> link))
+                .limit(count)
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    /**
+     * @param count number of links listed
+     * @return imbalance summary followed by one line per hottest link
+     */
+    public String report(int count) {
+        StringBuilder sb = new StringBuilder(String.format("Max load %.2f, mean %.2f, imbalance %.3f.%n", getMax(), getMean(), getImbalance()));
+        for (int link : hottest(count)) {
+            int element = link >> 1;
+            sb.append(String.format("Element %d,%d %s: %.2f%n", fabric.row(element), fabric.column(element),
+                    (link & 1) == Fabric.UP ? "up" : "down", load[link]));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(load);
+    }
+}
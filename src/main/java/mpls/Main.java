@@ -3,6 +3,7 @@ package mpls;
 import javafx.application.Application;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
+import javafx.concurrent.Worker;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.geometry.Insets;
@@ -12,21 +13,19 @@ import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.GridPane;
-import javafx.scene.layout.VBoxBuilder;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Line;
 import javafx.scene.shape.Rectangle;
 import javafx.scene.text.Text;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
-import sun.misc.IOUtils;
 
-import java.io.*;
-import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class Main extends Application {
 
@@ -35,15 +34,22 @@ public class Main extends Application {
     public static int viewportLeftMargin = 50;              //left margin before components start drawing
     public static double sizeOffset = 0.5;                  //rectangle size multiplier
     public static int lineVerticalOffset = 10;
-    public static int rows = 4;                             //grid dimensions
+    public static int rows = 4;                             //grid dimensions, resized after the connection file
     public static int columns = 3;
     public static double boldLineStrokeWidth = 4;           //line and text style
     public static String TEXT_STYLE = "-fx-font: 24 arial;";
     public static Color RECT_FILL_COLOR = Color.CYAN;       //desired rectangle fill color
-    public static String CONNECTION_FILENAME = "conn.txt";
-
-    private Map<Rectangle, Convection> convections = new HashMap<>();
-    private List<ValidConnection> validConnections = new ArrayList<>();
+    public static int canvasMinPorts = 64;                  //larger fabrics are drawn on a canvas, not as nodes
+    public static String CONNECTION_FILENAME = Topology.DEFAULT_WIRING;
+    public static String SNAPSHOT_DIRECTORY = System.getProperty(Topology.SNAPSHOT_DIRECTORY_PROPERTY);  //compiled topologies, off when unset
+    public static String PATH_LOG = System.getProperty(TopologyTask.PATH_LOG_PROPERTY);  //every path is written here, off when unset
+
+    private Fabric fabric;                                  //headless wiring model
+    private Convection[] convections;                       //on-screen view of each fabric element
+    private FabricCanvas fabricCanvas;                      //on-screen view of large fabrics instead
+    private Topology topology;                              //router and validation of the fabric, null while loading
+    private Stage primaryStage;
+    private final Group root = new Group();
     private List<Line> selectedLines = new ArrayList<>();
     List<Node> shapes = new ArrayList<>();
     final Stage errorPopup = new Stage();                   //list of elements
@@ -55,35 +61,110 @@ public class Main extends Application {
     @Override
     public void start(Stage primaryStage) {
 
-        List<Rectangle> rectangles = new ArrayList<>();
-        createRects(rectangles);
-        createLines(rectangles);                            //create rects, read txt file and generate lines
-
-        boolean validSchema = true;                         //used for accepting the schema as correct or not
-
+        this.primaryStage = primaryStage;
+        Metrics.register();
         TextField sourceInput = new TextField();            //add menu elements for inputs and labels
         TextField destinationInput = new TextField();
         drawMenu(sourceInput, destinationInput);
 
-        createConnections();                                //generate a complete connection model
-
-        String errors = validateConnections();              //check for invalid rules
-        if (!errors.trim().isEmpty()) {
-            validSchema = false;
-            updateErrorPopup(errors);
-        }
+        TopologyTask task = new TopologyTask(CONNECTION_FILENAME, SNAPSHOT_DIRECTORY, PATH_LOG, this::drawFabric);
+        drawStatus(task);
+        task.setOnSucceeded(event -> {
+            Metrics.get().recordTopology(task.getValue().getFabric());
+            showTopology(task.getValue());
+        });
+        task.setOnFailed(event -> {                         //no topology, routes stay unanswered
+            if (fabric == null) {                           //unreadable file, show an empty fabric of the default size
+                drawFabric(new Fabric(rows, columns));
+            }
+            Throwable failure = task.getException();
+            showErrors(CONNECTION_FILENAME + ": " + (failure.getMessage() != null ? failure.getMessage() : failure));
+        });
 
-        Group root = new Group();                           //draw components on screen
-        root.getChildren().addAll(shapes);
-        primaryStage.setTitle("MultiProtocol Label Switch (8x8)");
+        root.getChildren().addAll(shapes);                  //show the window right away, the fabric follows
+        shapes.clear();
+        primaryStage.setTitle("MultiProtocol Label Switch");
         primaryStage.setScene(new Scene(root, viewportWidth, viewportHeight));
         primaryStage.show();
 
-        if (!validSchema) {                                 //show errors if any
+        Thread loader = new Thread(task, "mpls-startup");   //read, route, validate and enumerate in the background
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Draw a freshly parsed fabric under the menu, as nodes or on a canvas depending on its size
+     *
+     * @param fabric parsed fabric
+     */
+    private void drawFabric(Fabric fabric) {
+
+        this.fabric = fabric;
+        rows = fabric.getRows();
+        columns = fabric.getColumns();
+        convections = new Convection[fabric.size()];
+        if (fabric.ports() >= canvasMinPorts) {             //one node per element would crawl
+            fabricCanvas = new FabricCanvas(fabric, viewportWidth, viewportHeight - 2 * viewportLeftMargin);
+            shapes.add(fabricCanvas);
+        } else {
+            List<Rectangle> rectangles = new ArrayList<>();
+            createRects(rectangles);
+            createLines(rectangles);                        //create rects and generate lines
+        }
+        root.getChildren().addAll(0, shapes);
+        shapes.clear();
+        primaryStage.setTitle("MultiProtocol Label Switch (" + fabric.ports() + "x" + fabric.ports() + ")");
+    }
+
+    /**
+     * Start answering route queries on a loaded topology, and show the errors of the schema if any
+     *
+     * @param topology loaded topology
+     */
+    private void showTopology(Topology topology) {
+
+        this.topology = topology;
+        showErrors(validateConnections());                  //check for invalid rules
+    }
+
+    /**
+     * @param errors errors to show in the popup, nothing is shown if empty
+     */
+    private void showErrors(String errors) {
+        if (!errors.trim().isEmpty()) {
+            updateErrorPopup(errors);
             errorPopup.show();
         }
     }
 
+    /**
+     * Draw the progress of the background loading, with a button to cancel it
+     *
+     * @param task background loading
+     */
+    private void drawStatus(TopologyTask task) {
+
+        ProgressBar progress = new ProgressBar();
+        progress.progressProperty().bind(task.progressProperty());
+        Label status = new Label();
+        status.textProperty().bind(task.messageProperty());
+        Button cancel = new Button("Cancel");
+        cancel.setOnAction(event -> task.cancel());
+        cancel.disableProperty().bind(task.runningProperty().not());
+        task.stateProperty().addListener((observable, oldState, state) -> {
+            if (state == Worker.State.CANCELLED || state == Worker.State.FAILED) {
+                status.textProperty().unbind();
+                status.setText(state == Worker.State.CANCELLED ? "Loading cancelled" : "Loading failed");
+            }
+        });
+
+        HBox bar = new HBox(10, progress, cancel, status);
+        bar.setAlignment(Pos.CENTER_LEFT);
+        bar.setLayoutX(10);
+        bar.setLayoutY(10);
+        shapes.add(bar);
+    }
+
     /**
      * Create rectangles that will later be drawn on screen, in a grid like formation
      *
@@ -109,98 +190,67 @@ public class Main extends Application {
     }
 
     /**
-     * Create lines among the rectangles, using the connections as they are read from a resource txt file
+     * Create lines among the rectangles, one for every link of the fabric
      *
      * @param rectangles list of rectangles, from with the lines will start and end
      */
     private void createLines(List<Rectangle> rectangles) {
 
-        List<Line> lines = new ArrayList<>();                           //read resource file
-        try {
-
-            InputStream inputStream =this.getClass().getClassLoader().getResourceAsStream(CONNECTION_FILENAME);
-            BufferedReader br = new BufferedReader(new InputStreamReader(inputStream, "UTF-8"));
-
-            int totalConnections = Integer.parseInt(br.readLine());
-            for (int i = 0; i < totalConnections; i++) {                //for each line generate a connection
-
-                String[] paramsStr = br.readLine().split(" ");
-
-                Connection conn = new Connection(Integer.parseInt(paramsStr[0]), Integer.parseInt(paramsStr[1]),
-                        (Integer.parseInt(paramsStr[2]) == 0) ? false : true, Integer.parseInt(paramsStr[3]),
-                        Integer.parseInt(paramsStr[4]), (Integer.parseInt(paramsStr[5]) == 0) ? false : true);
+        List<Line> lines = new ArrayList<>();
+        for (int element = 0; element < fabric.size(); element++) {
+            for (int port = Fabric.UP; port <= Fabric.DOWN; port++) {  //for each link generate a line
+                int target = fabric.target(element, port);
+                if (target == Fabric.NONE) {
+                    continue;
+                }
+                boolean isSource = port == Fabric.DOWN;
+                boolean isDestination = fabric.targetPort(element, port) == Fabric.DOWN;
 
-                Rectangle sourceRectangle = rectangles.get(conn.getSourceRow() * columns + conn.getSourceColumn());
-                Rectangle destinationRectangle = rectangles.get(conn.getDestinationRow() * columns + conn.getDestinationColumn());
+                Rectangle sourceRectangle = rectangles.get(element);
+                Rectangle destinationRectangle = rectangles.get(target);
                 Line line = new Line(sourceRectangle.getX() + sourceRectangle.getWidth(),
-                        sourceRectangle.getY() + (conn.isSource() ? sourceRectangle.getHeight() - lineVerticalOffset : lineVerticalOffset), destinationRectangle.getX(),
-                        destinationRectangle.getY() + (conn.isDestination() ? destinationRectangle.getHeight() - lineVerticalOffset : lineVerticalOffset));
+                        sourceRectangle.getY() + (isSource ? sourceRectangle.getHeight() - lineVerticalOffset : lineVerticalOffset), destinationRectangle.getX(),
+                        destinationRectangle.getY() + (isDestination ? destinationRectangle.getHeight() - lineVerticalOffset : lineVerticalOffset));
 
                 lines.add(line);
 
-                if (!convections.containsKey(sourceRectangle)) {        //create a Convention object using the current file line
-                    convections.put(sourceRectangle, new Convection());
-                    Convection convection = convections.get(sourceRectangle);
-                    convection.setRectangle(sourceRectangle);           //convention from which the line starts
-                    convection.setSourceConvection(conn.getSourceColumn() == 0);
-                    convection.setI(conn.getSourceRow());
-                    convection.setJ(conn.getSourceColumn());
-                    createTextForRectangle(convection);
-                }
-                Convection convection = convections.get(sourceRectangle);
-                if (convection.isSourceConvection()) {
-                    if (!conn.isSource()) {
-                        convection.setUpFlag((conn.getSourceRow() * 2));
-                    } else {
-                        convection.setDownFlag((conn.getSourceRow() * 2 + 1));
-                    }
-                }
-
-                if (!convections.containsKey(destinationRectangle)) {   //convention from which the line ends
-                    convections.put(destinationRectangle, new Convection());
-                    Convection convectionDest = convections.get(destinationRectangle);
-                    convectionDest.setRectangle(destinationRectangle);
-                    convectionDest.setFinalConvection(conn.getDestinationColumn() == columns - 1);
-                    convectionDest.setI(conn.getDestinationRow());
-                    convectionDest.setJ(conn.getDestinationColumn());
-                    createTextForRectangle(convectionDest);
-                }
-                Convection convectionDest = convections.get(destinationRectangle);
-                if (convectionDest.isFinalConvection()) {               //update connection flags
-                    if (!conn.isDestination()) {
-                        convectionDest.setUpFlag((conn.getDestinationRow() * 2));
-                    } else {
-                        convectionDest.setDownFlag((conn.getDestinationRow() * 2 + 1));
-                    }
-                }
-
-                if (!conn.isSource()) {
-                    convection.setNextUpConvection(convectionDest);
-                    convection.setNextUpConvectionIsDown(conn.isDestination());
+                Convection convection = createConvection(rectangles, fabric.row(element), fabric.column(element));
+                Convection convectionDest = createConvection(rectangles, fabric.row(target), fabric.column(target));
+                if (!isSource) {                                        //attach the line to both of its ends
                     convection.setOutUp(line);
-                    if (!convection.isNextUpConvectionIsDown()) {
-                        convectionDest.setInUp(line);
-                    } else {
-                        convectionDest.setInDown(line);
-                    }
                 } else {
-                    convection.setNextDownConvection(convectionDest);
-                    convection.setNextDownConvectionIsDown(conn.isDestination());
                     convection.setOutDown(line);
-                    if (!convection.isNextUpConvectionIsDown()) {
-                        convectionDest.setInUp(line);
-                    } else {
-                        convectionDest.setInDown(line);
-                    }
+                }
+                if (!isDestination) {
+                    convectionDest.setInUp(line);
+                } else {
+                    convectionDest.setInDown(line);
                 }
             }
-        } catch (Exception e) {
-            e.printStackTrace();
         }
 
         shapes.addAll(lines);
     }
 
+    /**
+     * Get the view of a fabric element, creating it the first time a line touches it
+     *
+     * @param rectangles list of rectangles, one per element
+     * @param row        element row
+     * @param column     element column
+     * @return the view of the element
+     */
+    private Convection createConvection(List<Rectangle> rectangles, int row, int column) {
+
+        int element = fabric.index(row, column);
+        if (convections[element] == null) {
+            Convection convection = new Convection(rectangles.get(element), column == 0, column == columns - 1, row, column);
+            convections[element] = convection;
+            createTextForRectangle(convection);
+        }
+        return convections[element];
+    }
+
     /**
      * Draw numbers around left and right rectangles
      *
@@ -236,72 +286,16 @@ public class Main extends Application {
         }
     }
 
-    /**
-     * Create all available {@link ValidConnection connections} using the current schema
-     */
-    private void createConnections() {
-
-        List<Convection> conventionsList = new ArrayList<>(convections.values());
-        for (Convection convention : conventionsList) {
-            if (convention.isSourceConvection()) {                      //start from the left (source) convention
-
-                createInnerConnection(convention, "", convention.getUpFlag(), false);
-                createInnerConnection(convention, "", convention.getDownFlag(), true);
-            }
-        }
-    }
-
-    /**
-     * Inserts a valid connection each time a recursive call reaches a final convention
-     *
-     * @param convention current convention to visit
-     * @param code       binary code so far (0: same side crossing, 1: intersection crossing)
-     * @param sourceFlag number from which the recursion began
-     * @param isDown     whether we are visiting the current convention from a down side convention or not
-     */
-    private void createInnerConnection(Convection convention, String code, Integer sourceFlag, boolean isDown) {
-
-        if (!convention.isFinalConvection()) {
-            createInnerConnection(convention.getNextUpConvection(), code.concat(isDown ? "1" : "0"), sourceFlag, convention.isNextUpConvectionIsDown());
-            createInnerConnection(convention.getNextDownConvection(), code.concat(isDown ? "0" : "1"), sourceFlag, convention.isNextDownConvectionIsDown());
-        } else {
-
-            validConnections.add(new ValidConnection(sourceFlag, convention.getUpFlag(), code.concat(isDown ? "1" : "0")));
-            System.out.println(validConnections.get(validConnections.size() - 1).getSource() + " -> " +
-                    validConnections.get(validConnections.size() - 1).getDestination() + ": " + validConnections.get(validConnections.size() - 1).getCode());
-
-            validConnections.add(new ValidConnection(sourceFlag, convention.getDownFlag(), code.concat(isDown ? "0" : "1")));
-            System.out.println(validConnections.get(validConnections.size() - 1).getSource() + " -> " +
-                    validConnections.get(validConnections.size() - 1).getDestination() + ": " + validConnections.get(validConnections.size() - 1).getCode());
-        }
-    }
-
     /**
      * Define, based on specific rules whether the schema is valid or not
      *
-     * <p>Checks whether everybody can communicate with everyone</p>
+     * <p>Checks whether everybody can communicate with everyone, through exactly one path, or through any number of
+     * paths in a Benes fabric</p>
      *
-     * @return
+     * @return the errors found, or an empty string
      */
     private String validateConnections() {
-
-        int n = rows * 2;                                               //* 2 because we are dealing with binary conventions
-        int errors = 0;
-        String errorsStr = "";                                          //errors so far
-
-        for (int i = 0; i < n; i++) {
-            int finalI = i;
-            List<ValidConnection> currentConnections =                  //get connections that start for each number
-                    validConnections.stream().filter(v -> v.getSource() == finalI).collect(Collectors.toList());
-            if (currentConnections.size() < n) {                        //they must have a specific size, otherwise they cant communicate with everyone
-                errorsStr = errorsStr.concat("Source ").concat(finalI + "").concat(" has less than ").concat(n + "").concat(" connections.\n");
-                errors++;
-            } else if (currentConnections.size() > n) {
-                errorsStr = errorsStr.concat("Source ").concat(finalI + "").concat(" has more than ").concat(n + "").concat(" connections\n");
-                errors++;
-            }
-        }
-        return !errorsStr.trim().isEmpty() ? "Found ".concat(errors + "").concat(" errors.\n").concat(errorsStr) : "";
+        return topology.report();
     }
 
     /**
@@ -312,11 +306,10 @@ public class Main extends Application {
     private void updateErrorPopup(String errors) {
 
         errorPopup.initModality(Modality.WINDOW_MODAL);                 //prepare
-        Scene myDialogScene = new Scene(VBoxBuilder.create()
-                .children(new Text(errors))
-                .alignment(Pos.CENTER)
-                .padding(new Insets(10))
-                .build());
+        VBox dialogBox = new VBox(new Text(errors));
+        dialogBox.setAlignment(Pos.CENTER);
+        dialogBox.setPadding(new Insets(10));
+        Scene myDialogScene = new Scene(dialogBox);
 
         errorPopup.setScene(myDialogScene);                             //add to scene
     }
@@ -375,6 +368,7 @@ public class Main extends Application {
         grid.setAlignment(Pos.CENTER);
         grid.setHgap(10);
         grid.setPadding(new Insets(viewportHeight - 50, 25, 25, 25));
+        grid.setPickOnBounds(false);                                    //the padding covers the fabric canvas, leave it the mouse for pan and zoom
 
         shapes.add(grid);
     }
@@ -418,60 +412,48 @@ public class Main extends Application {
     private String findRoute(int start, int end) {
 
         clearSelectedLines();
-        List<Convection> convectionList = new ArrayList<>(convections.values());
-
-        Convection startingConvection = convectionList.stream().filter(c -> c.isSourceConvection() &&
-                (c.getUpFlag().equals(start) || c.getDownFlag().equals(start))).findFirst().orElse(null);
-        if (startingConvection == null) {                           //find starting convection
+        if (topology == null) {                                     //still loading, cancelled or failed
             return "";
         }
-
-        Convection finalConvection = convectionList.stream().filter(c -> c.isFinalConvection() &&
-                (c.getUpFlag().equals(end) || c.getDownFlag().equals(end))).findFirst().orElse(null);
-        if (finalConvection == null) {                              //find ending convection
+        if (start >= fabric.ports() || end >= fabric.ports()) {
             return "";
         }
 
-        selectedLines.add((startingConvection.getUpFlag().equals(start)) ? startingConvection.getInUp() : startingConvection.getInDown());
-        selectedLines.add((finalConvection.getUpFlag().equals(end)) ? finalConvection.getOutUp() : finalConvection.getOutDown());
+        if (fabricCanvas == null) {
+            Convection startingConvection = convections[fabric.sourceElement(start)];
+            if (startingConvection == null) {                       //find starting convection
+                return "";
+            }
+
+            Convection finalConvection = convections[fabric.finalElement(end)];
+            if (finalConvection == null) {                          //find ending convection
+                return "";
+            }
 
-        ValidConnection currentValidConnection = validConnections.stream().filter(v -> v.getSource() == start && v.getDestination() == end).findFirst().orElse(null);
-        if (currentValidConnection == null) {                       //find connection object for the given route
+            selectedLines.add((start & 1) == Fabric.UP ? startingConvection.getInUp() : startingConvection.getInDown());
+            selectedLines.add((end & 1) == Fabric.UP ? finalConvection.getOutUp() : finalConvection.getOutDown());
+        }
+
+        long queryStart = System.nanoTime();
+        int code = topology.getRouter().route(start, end);
+        Metrics.get().recordRoute(queryStart, code != Router.NO_ROUTE);
+        if (code == Router.NO_ROUTE) {                          //find the code for the given route
             return "No connection found!";
         }
 
-        Convection currentConvection = startingConvection;          //start from starting convection
-        String code = currentValidConnection.getCode();
-        boolean upFlag = startingConvection.getUpFlag().equals(start);
+        int[] links = new int[columns];                             //walk the fabric along the code
+        fabric.walk(start, code, links);
+        if (fabricCanvas != null) {                                 //only the overlay is redrawn
+            fabricCanvas.showRoute(start, links);
+            return RouteTable.format(code, columns);
+        }
         for (int i = 0; i < columns - 1; i++) {
-
-            if (upFlag) {                                           //define the next convection
-                if (code.charAt(i) == '0') {
-                    selectedLines.add(currentConvection.getOutUp());
-                    upFlag = !currentConvection.isNextUpConvectionIsDown();
-                    currentConvection = currentConvection.getNextUpConvection();
-
-                } else {
-                    selectedLines.add(currentConvection.getOutDown());
-                    upFlag = !currentConvection.isNextDownConvectionIsDown();
-                    currentConvection = currentConvection.getNextDownConvection();
-                }
-            } else {
-                if (code.charAt(i) == '0') {
-                    selectedLines.add(currentConvection.getOutDown());
-                    upFlag = !currentConvection.isNextDownConvectionIsDown();
-                    currentConvection = currentConvection.getNextDownConvection();
-                } else {
-                    selectedLines.add(currentConvection.getOutUp());
-                    upFlag = !currentConvection.isNextUpConvectionIsDown();
-                    currentConvection = currentConvection.getNextUpConvection();
-                }
-            }
+            Convection currentConvection = convections[links[i] >> 1];
+            selectedLines.add((links[i] & 1) == Fabric.UP ? currentConvection.getOutUp() : currentConvection.getOutDown());
         }
 
-
         selectedLines.forEach(l -> l.setStrokeWidth(boldLineStrokeWidth));
-        return code;
+        return RouteTable.format(code, columns);
     }
 
     /**
@@ -480,5 +462,8 @@ public class Main extends Application {
     private void clearSelectedLines() {
         selectedLines.forEach(l -> l.setStrokeWidth(1d));
         selectedLines.clear();
+        if (fabricCanvas != null) {
+            fabricCanvas.clearRoute();
+        }
     }
 }
@@ -0,0 +1,209 @@
+package mpls;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide instrumentation: startup phase durations, route query counts and latencies, and the size of the
+ * topology in use
+ *
+ * <p>Recording never allocates or locks, so it stays on in production. The figures are published as the
+ * {@value #OBJECT_NAME} MBean, and printed every {@value #PERIOD_PROPERTY} seconds when that system property is
+ * set.</p>
+ */
+public class Metrics implements MetricsMBean {
+
+    public static final String OBJECT_NAME = "mpls:type=Metrics";
+    public static final String PERIOD_PROPERTY = "mpls.metricsPeriod";
+
+    private static final Metrics INSTANCE = new Metrics();
+    private static boolean registered;
+
+    /**
+     * Timed steps of loading a topology
+     */
+    public enum Phase {
+
+        PARSE,          //connection file to fabric
+        ROUTE_BUILD,    //router of the fabric
+        VALIDATE,       //full access and unique path check
+        ENUMERATE,      //listing every path
+        SNAPSHOT_LOAD   //whole topology read back from a snapshot
+    }
+
+    private final LongAdder routeQueries = new LongAdder();
+    private final LongAdder routeMisses = new LongAdder();
+    private final LatencyHistogram routeLatency = new LatencyHistogram();
+    private final AtomicLongArray phaseNanos = new AtomicLongArray(Phase.values().length);  //latest duration of each phase
+    private volatile int ports;
+    private volatile int columns;
+    private volatile int links;
+
+    private Metrics() {
+    }
+
+    public static Metrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Publish the MBean, and start the periodic report if {@value #PERIOD_PROPERTY} is set; later calls do nothing
+     */
+    public static synchronized void register() {
+
+        if (registered) {
+            return;
+        }
+        registered = true;
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            System.err.println("Metrics not published: " + e.getMessage());
+        }
+        String period = System.getProperty(PERIOD_PROPERTY);
+        if (period != null) {
+            long seconds = Long.parseLong(period);
+            ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "mpls-metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reporter.scheduleAtFixedRate(() -> System.out.println(INSTANCE.getSnapshot()), seconds, seconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * @param phase step that just finished
+     * @param start {@link System#nanoTime()} when it started
+     */
+    public void recordPhase(Phase phase, long start) {
+        phaseNanos.set(phase.ordinal(), System.nanoTime() - start);
+    }
+
+    /**
+     * @param start {@link System#nanoTime()} when the query started
+     * @param found whether a route was found
+     */
+    public void recordRoute(long start, boolean found) {
+        routeQueries.increment();
+        if (!found) {
+            routeMisses.increment();
+        }
+        routeLatency.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Called where a topology is published, not where one is built: rejected and candidate wirings must not show up
+     *
+     * @param fabric fabric of the topology now in use
+     */
+    public void recordTopology(Fabric fabric) {
+        int wired = 0;
+        for (int next : fabric.getNext()) {
+            if (next != Fabric.NONE) {
+                wired++;
+            }
+        }
+        ports = fabric.ports();
+        columns = fabric.getColumns();
+        links = wired;
+    }
+
+    @Override
+    public long getRouteQueries() {
+        return routeQueries.sum();
+    }
+
+    @Override
+    public long getRouteMisses() {
+        return routeMisses.sum();
+    }
+
+    @Override
+    public double getRouteLatencyMeanNanos() {
+        return routeLatency.getMean();
+    }
+
+    @Override
+    public long getRouteLatencyP50Nanos() {
+        return routeLatency.percentile(50);
+    }
+
+    @Override
+    public long getRouteLatencyP99Nanos() {
+        return routeLatency.percentile(99);
+    }
+
+    @Override
+    public long getRouteLatencyMaxNanos() {
+        return routeLatency.getMax();
+    }
+
+    @Override
+    public long getParseNanos() {
+        return phaseNanos.get(Phase.PARSE.ordinal());
+    }
+
+    @Override
+    public long getRouteBuildNanos() {
+        return phaseNanos.get(Phase.ROUTE_BUILD.ordinal());
+    }
+
+    @Override
+    public long getValidateNanos() {
+        return phaseNanos.get(Phase.VALIDATE.ordinal());
+    }
+
+    @Override
+    public long getEnumerateNanos() {
+        return phaseNanos.get(Phase.ENUMERATE.ordinal());
+    }
+
+    @Override
+    public long getSnapshotLoadNanos() {
+        return phaseNanos.get(Phase.SNAPSHOT_LOAD.ordinal());
+    }
+
+    @Override
+    public int getPorts() {
+        return ports;
+    }
+
+    @Override
+    public int getColumns() {
+        return columns;
+    }
+
+    @Override
+    public int getLinks() {
+        return links;
+    }
+
+    @Override
+    public String getSnapshot() {
+        StringBuilder sb = new StringBuilder("metrics: ports=").append(ports).append(" columns=").append(columns)
+                .append(" links=").append(links)
+                .append(" queries=").append(getRouteQueries()).append(" misses=").append(getRouteMisses())
+                .append(String.format(" latency mean=%.0fns", getRouteLatencyMeanNanos()))
+                .append(" p50=").append(getRouteLatencyP50Nanos()).append("ns p99=").append(getRouteLatencyP99Nanos())
+                .append("ns max=").append(getRouteLatencyMaxNanos()).append("ns");
+        for (Phase phase : Phase.values()) {
+            sb.append(' ').append(phase.name().toLowerCase()).append('=')
+                    .append(String.format("%.3fms", phaseNanos.get(phase.ordinal()) / 1e6));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void reset() {
+        routeQueries.reset();
+        routeMisses.reset();
+        routeLatency.reset();
+    }
+}
@@ -0,0 +1,42 @@
+package mpls;
+
+/**
+ * Management interface of {@link Metrics}, registered as {@value Metrics#OBJECT_NAME}
+ */
+public interface MetricsMBean {
+
+    long getRouteQueries();
+
+    long getRouteMisses();
+
+    double getRouteLatencyMeanNanos();
+
+    long getRouteLatencyP50Nanos();
+
+    long getRouteLatencyP99Nanos();
+
+    long getRouteLatencyMaxNanos();
+
+    long getParseNanos();
+
+    long getRouteBuildNanos();
+
+    long getValidateNanos();
+
+    long getEnumerateNanos();
+
+    long getSnapshotLoadNanos();
+
+    int getPorts();
+
+    int getColumns();
+
+    int getLinks();
+
+    /**
+     * @return every figure on one line, as written by the periodic report
+     */
+    String getSnapshot();
+
+    void reset();
+}
@@ -0,0 +1,214 @@
+package mpls;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * Builds multicast trees from one source to many destinations, and finds the unicast routes they collide with
+ *
+ * <p>With a {@link TagRouter} the group is split as it goes: every element of the tree divides the destinations that
+ * reached it between its two outputs, so each stage takes one pass over the group and nothing is routed on its own.
+ * Other routers, i.e. a {@link RouteTable}, look up every destination once, and the tree is read off the
+ * {@link RouteTrie} of the codes. Either way a shared stretch of path is followed once for the whole group.</p>
+ */
+public class MulticastRouter {
+
+    @Getter
+    private final Router router;
+    private final Fabric fabric;
+
+    public MulticastRouter(Router router) {
+        this.router = router;
+        this.fabric = router.getFabric();
+    }
+
+    /**
+     * @param source       source flag
+     * @param destinations destination flags of the group, in any order, repetitions ignored
+     * @return the routing tree, with the destinations that cannot be reached left out of it
+     */
+    public MulticastTree route(int source, int[] destinations) {
+
+        int[] distinct = destinations.clone();
+        Arrays.sort(distinct);
+        int count = 0;
+        for (int i = 0; i < distinct.length; i++) {
+            if (i == 0 || distinct[i] != distinct[i - 1]) {
+                distinct[count++] = distinct[i];
+            }
+        }
+        if (router instanceof TagRouter) {
+            return new Splitter((TagRouter) router, source, distinct, count).route();
+        }
+        RouteTrie trie = RouteTrie.route(router, source, distinct, count);
+
+        Builder builder = new Builder();
+        int elementCount = trie.walk(builder);
+        int[] links = Arrays.copyOf(builder.links, builder.linkCount);
+        Arrays.sort(links);
+        links = Arrays.stream(links).distinct().toArray();         //prefixes meeting in a multi-path fabric
+        return new MulticastTree(source, trie.getDestinations(), trie.getCodes(), trie.getUnreachable(),
+                Arrays.copyOf(builder.elements, elementCount), Arrays.copyOf(builder.replication, elementCount), links);
+    }
+
+    /**
+     * Splits a group of destinations between the outputs of every element it reaches, depth first, bit 0 first
+     *
+     * <p>The branches of an element are reported once its subtree is done, and only when they lead to a destination:
+     * in a fabric without full access the tags may lead elsewhere, and such a branch is left out of the tree as it
+     * would be by the router. Its visit number is then handed back, so the visits stay numbered in depth first
+     * order.</p>
+     */
+    private class Splitter {
+
+        private final TagRouter tagRouter;
+        private final int source;
+        private final int[] group;                                  //destinations still routed, split in place
+        private final int[] reached;                                //destinations reached, in code order
+        private final int[] codes;                                  //code of each destination reached
+        private final int[] unreachable;
+        private final Builder builder = new Builder();
+        private int reachedCount;
+        private int unreachableCount;
+        private int groupCount;
+        private int visits;
+
+        private Splitter(TagRouter tagRouter, int source, int[] destinations, int count) {
+            this.tagRouter = tagRouter;
+            this.source = source;
+            this.group = new int[count];
+            this.reached = new int[count];
+            this.codes = new int[count];
+            this.unreachable = new int[count];
+            boolean validSource = source >= 0 && source < fabric.ports();
+            for (int i = 0; i < count; i++) {
+                if (validSource && destinations[i] >= 0 && destinations[i] < fabric.ports()) {
+                    group[groupCount++] = destinations[i];
+                } else {
+                    unreachable[unreachableCount++] = destinations[i];
+                }
+            }
+        }
+
+        private MulticastTree route() {
+
+            if (groupCount > 0) {
+                split(fabric.sourceElement(source), source & 1, 0, 0, 0, groupCount);
+            }
+            Arrays.sort(unreachable, 0, unreachableCount);          //in the given order, as RouteTrie leaves them
+            int[] links = Arrays.copyOf(builder.links, builder.linkCount);
+            Arrays.sort(links);
+            links = Arrays.stream(links).distinct().toArray();     //prefixes meeting in a Benes fabric
+            return new MulticastTree(source, Arrays.copyOf(reached, reachedCount), Arrays.copyOf(codes, reachedCount),
+                    Arrays.copyOf(unreachable, unreachableCount), Arrays.copyOf(builder.elements, visits),
+                    Arrays.copyOf(builder.replication, visits), links);
+        }
+
+        /**
+         * @param element element reached by the destinations {@code group[from, to)}
+         * @param port    input port of the element
+         * @param code    code bits of the columns before
+         * @return number of destinations reached through the element
+         */
+        private int split(int element, int port, int column, int code, int from, int to) {
+
+            int middle = from;                                      //straight through first, i.e. code bit 0
+            for (int i = from; i < to; i++) {
+                if (tagRouter.output(source, column, element, port, group[i]) == port) {
+                    int destination = group[i];
+                    group[i] = group[middle];
+                    group[middle++] = destination;
+                }
+            }
+            int visit = visits++;
+            int[] reachedBy = new int[2];
+            for (int bit = 0; bit < 2; bit++) {
+                int lo = bit == 0 ? from : middle;
+                int hi = bit == 0 ? middle : to;
+                int out = port ^ bit;
+                if (lo == hi) {
+                    continue;
+                }
+                if (!fabric.isFinal(element)) {
+                    int link = Fabric.link(element, out);
+                    reachedBy[bit] = split(fabric.getNext()[link], fabric.getNextIsDown().get(link) ? Fabric.DOWN : Fabric.UP,
+                            column + 1, code << 1 | bit, lo, hi);
+                    continue;
+                }
+                for (int i = lo; i < hi; i++) {                     //only the destination of this output is reached
+                    if (group[i] == fabric.row(element) * 2 + out) {
+                        reached[reachedCount] = group[i];
+                        codes[reachedCount++] = code << 1 | bit;
+                        reachedBy[bit]++;
+                    } else {
+                        unreachable[unreachableCount++] = group[i];
+                    }
+                }
+            }
+            if (reachedBy[0] + reachedBy[1] == 0) {
+                visits = visit;                                     //nothing below was kept either
+                return 0;
+            }
+            for (int bit = 0; bit < 2; bit++) {
+                if (reachedBy[bit] > 0) {
+                    builder.branch(visit, element, port ^ bit, 0, reachedBy[bit]);
+                }
+            }
+            return reachedBy[0] + reachedBy[1];
+        }
+    }
+
+    /**
+     * Find the existing unicast routes that share an output link with the tree, i.e. would have to carry both
+     *
+     * @param tree         multicast tree
+     * @param sources      source of every unicast route
+     * @param destinations destination of every unicast route
+     * @return indexes of the colliding unicast routes, in increasing order
+     */
+    public int[] conflicts(MulticastTree tree, int[] sources, int[] destinations) {
+
+        if (sources.length != destinations.length) {
+            throw new IllegalArgumentException("Got " + sources.length + " sources but " + destinations.length + " destinations");
+        }
+        int[] links = new int[fabric.getColumns()];
+        int[] conflicts = new int[sources.length];
+        int count = 0;
+        for (int i = 0; i < sources.length; i++) {
+            int code = router.route(sources[i], destinations[i]);
+            if (code == Router.NO_ROUTE) {
+                continue;
+            }
+            fabric.walk(sources[i], code, links);
+            for (int link : links) {
+                if (Arrays.binarySearch(tree.getLinks(), link) >= 0) {
+                    conflicts[count++] = i;
+                    break;
+                }
+            }
+        }
+        return Arrays.copyOf(conflicts, count);
+    }
+
+    /**
+     * Collects the elements, outputs and links of the tree out of the branches of a {@link RouteTrie}
+     *
+     * <p>In a unique path fabric every prefix ends on its own element. In a multi-path one two prefixes may meet on
+     * the same element, which is then listed once per prefix, so room is left for at most two visits per element.</p>
+     */
+    private class Builder implements RouteTrie.BranchVisitor {
+
+        private final int[] elements = new int[fabric.size() * 2];
+        private final int[] replication = new int[fabric.size() * 2];
+        private final int[] links = new int[fabric.size() * 4];
+        private int linkCount;
+
+        @Override
+        public void branch(int visit, int element, int out, int from, int to) {
+            elements[visit] = element;
+            replication[visit] |= 1 << out;
+            links[linkCount++] = Fabric.link(element, out);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package mpls;
+
+import lombok.Getter;
+
+/**
+ * Routing tree of one source to a group of destinations, built by {@link MulticastRouter}
+ *
+ * <p>Every element of the tree lists the outputs it replicates the packet to, as a mask: {@link #REPLICATE_UP},
+ * {@link #REPLICATE_DOWN} or {@link #REPLICATE_BOTH}.</p>
+ */
+@Getter
+public class MulticastTree {
+
+    public static final int REPLICATE_UP = 1 << Fabric.UP;
+    public static final int REPLICATE_DOWN = 1 << Fabric.DOWN;
+    public static final int REPLICATE_BOTH = REPLICATE_UP | REPLICATE_DOWN;
+
+    private final int source;
+    private final int[] destinations;                               //reachable destinations, in increasing code order
+    private final int[] codes;                                      //code of each destination
+    private final int[] unreachable;                                //requested destinations without a route
+    private final int[] elements;                                   //elements of the tree, depth first from the source
+    private final int[] replication;                                //outputs used by each element of the tree
+    private final int[] links;                                      //every output link of the tree, in increasing order
+
+    public MulticastTree(int source, int[] destinations, int[] codes, int[] unreachable, int[] elements, int[] replication, int[] links) {
+        this.source = source;
+        this.destinations = destinations;
+        this.codes = codes;
+        this.unreachable = unreachable;
+        this.elements = elements;
+        this.replication = replication;
+        this.links = links;
+    }
+
+    /**
+     * @return number of elements sending the packet out on both sides
+     */
+    public int getReplicationCount() {
+        int count = 0;
+        for (int outputs : replication) {
+            if (outputs == REPLICATE_BOTH) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,157 @@
+package mpls;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Lazy walk over every path of a range of source flags, one {@link ValidConnection} at a time
+ *
+ * <p>The depth first walk of {@link Fabric#forEachPath(int, Fabric.PathVisitor)} is kept on an explicit stack of
+ * one entry per column, so the walk can stop after any path and nothing but the current path is held. Splitting hands
+ * off half of the sources not started yet; once a single source is left, it hands off the largest subtree not entered
+ * yet, i.e. the crossed branch of the shallowest stage still on its straight branch.</p>
+ *
+ * <p>Paths of one spliterator come in the order of {@link Fabric#forEachPath(int, Fabric.PathVisitor)}, but splits
+ * do not keep that order, so the spliterator is not {@link #ORDERED}.</p>
+ */
+public class PathSpliterator implements Spliterator<ValidConnection> {
+
+    private static final int LEAF_STAGES = 4;                       //subtrees spanning fewer stages are not split
+
+    private final Fabric fabric;
+    private final int columns;
+    private final int[] elements;                                   //per stage: element reached
+    private final int[] ports;                                      //per stage: input port of that element
+    private final int[] codes;                                      //per stage: code bits of the stages before
+    private final int[] bits;                                       //per stage: next bit to try, 2 when both are done
+    private final int root;                                         //first stage of the walks
+    private int depth = -1;                                         //top of the stack, below root when idle
+    private int source;                                             //source of the current walk
+    private int nextSource;                                         //sources not started yet
+    private int endSource;
+
+    /**
+     * @param fabric      fabric to walk
+     * @param firstSource first source flag
+     * @param endSource   source flag after the last one
+     */
+    public PathSpliterator(Fabric fabric, int firstSource, int endSource) {
+        this(fabric, firstSource, endSource, 0);
+    }
+
+    private PathSpliterator(Fabric fabric, int firstSource, int endSource, int root) {
+        this.fabric = fabric;
+        this.columns = fabric.getColumns();
+        this.elements = new int[columns];
+        this.ports = new int[columns];
+        this.codes = new int[columns];
+        this.bits = new int[columns];
+        this.root = root;
+        this.nextSource = firstSource;
+        this.endSource = endSource;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super ValidConnection> action) {
+
+        while (true) {
+            if (depth < root) {                                     //current walk done, start the next source
+                if (nextSource >= endSource) {
+                    return false;
+                }
+                start(nextSource++);
+                continue;
+            }
+            int bit = bits[depth];
+            if (bit == 2) {                                         //both branches done, back up
+                depth--;
+                continue;
+            }
+            bits[depth] = bit + 1;
+            int element = elements[depth];
+            int out = ports[depth] ^ bit;
+            int code = codes[depth] << 1 | bit;
+            if (depth == columns - 1) {                             //final element, the code is complete
+                action.accept(new ValidConnection(source, fabric.row(element) * 2 + out, code));
+                return true;
+            }
+            int target = fabric.target(element, out);
+            if (target != Fabric.NONE) {
+                push(target, fabric.targetPort(element, out), code);
+            }
+        }
+    }
+
+    @Override
+    public Spliterator<ValidConnection> trySplit() {
+
+        int unstarted = endSource - nextSource;
+        boolean walking = depth >= root;
+        if (unstarted > 1 || (unstarted == 1 && walking)) {        //hand off the upper half of the sources left
+            int middle = nextSource + unstarted / 2;
+            PathSpliterator other = new PathSpliterator(fabric, middle, endSource);
+            endSource = middle;
+            return other;
+        }
+        if (unstarted == 1) {                                       //one source left, walk it to split its subtrees
+            start(nextSource++);
+        }
+        for (int stage = root; stage <= Math.min(depth, columns - 1 - LEAF_STAGES); stage++) {
+            if (bits[stage] == 2) {
+                continue;
+            }
+            boolean straight = bits[stage] == 0;                   //top of the stack, neither branch entered yet
+            bits[stage] = 2;
+            int element = elements[stage];
+            int port = ports[stage];
+            int code = codes[stage];
+            if (straight) {                                         //keep the straight branch here
+                int target = fabric.target(element, port);
+                if (target != Fabric.NONE) {
+                    push(target, fabric.targetPort(element, port), code << 1);
+                }
+            }
+            int target = fabric.target(element, port ^ 1);         //and give the crossed one away
+            if (target == Fabric.NONE) {
+                continue;
+            }
+            PathSpliterator other = new PathSpliterator(fabric, endSource, endSource, stage + 1);
+            other.source = source;
+            other.depth = stage;
+            other.push(target, fabric.targetPort(element, port ^ 1), code << 1 | 1);
+            return other;
+        }
+        return null;
+    }
+
+    /**
+     * @return upper bound of the paths left, assuming every link is wired
+     */
+    @Override
+    public long estimateSize() {
+        long size = (long) (endSource - nextSource) << columns;
+        for (int stage = root; stage <= depth; stage++) {
+            size += (2 - bits[stage]) * (1L << (columns - 1 - stage));
+        }
+        return size;
+    }
+
+    @Override
+    public int characteristics() {
+        return NONNULL;
+    }
+
+    private void start(int sourceFlag) {
+        source = sourceFlag;
+        depth = -1;
+        push(fabric.sourceElement(sourceFlag), sourceFlag & 1, 0);
+    }
+
+    private void push(int element, int port, int code) {
+        depth++;
+        elements[depth] = element;
+        ports[depth] = port;
+        codes[depth] = code;
+        bits[depth] = 0;
+    }
+}
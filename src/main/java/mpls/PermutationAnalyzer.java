@@ -0,0 +1,229 @@
+package mpls;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Decides whether full permutations of sources to destinations can be routed at the same time
+ *
+ * <p>A permutation blocks when two of its routes leave an element through the same output, i.e. share an internal
+ * link (identified by {@link Fabric#link(int, int)}). Batches and exhaustive counts run on the common fork-join
+ * pool.</p>
+ */
+public class PermutationAnalyzer {
+
+    public static final int MAX_EXHAUSTIVE_PORTS = 16;              //ports! permutations, beyond this it never ends
+    private static final int BATCH_THRESHOLD = 256;                 //permutations analysed by a single task
+    private static final int SPLIT_DEPTH = 2;                       //sources fixed before counting sequentially
+
+    private final Router router;
+    private final Fabric fabric;
+    private final int ports;
+    private final int hops;                                         //internal links crossed by every route
+
+    public PermutationAnalyzer(Router router) {
+        this.router = router;
+        this.fabric = router.getFabric();
+        this.ports = fabric.ports();
+        this.hops = fabric.getColumns() - 1;
+    }
+
+    /**
+     * @param permutation destination of every source
+     * @return conflicting links and unroutable sources of the permutation
+     */
+    public PermutationResult analyze(int[] permutation) {
+        return new Scratch().analyze(permutation);
+    }
+
+    /**
+     * Analyse a batch of permutations, split across the cores
+     *
+     * @param permutations destination of every source, for every permutation
+     * @return one result per permutation, in the same order
+     */
+    public PermutationResult[] analyze(int[][] permutations) {
+
+        PermutationResult[] results = new PermutationResult[permutations.length];
+        ForkJoinPool.commonPool().invoke(new BatchTask(permutations, results, 0, permutations.length));
+        return results;
+    }
+
+    /**
+     * Count the permutations that route without conflicts, by backtracking over the destination of every source
+     *
+     * <p>Blocked partial assignments are abandoned as soon as they appear; the first {@link #SPLIT_DEPTH} sources
+     * are fanned out as parallel tasks.</p>
+     *
+     * @return number of admissible permutations
+     */
+    public long countAdmissible() {
+
+        if (ports > MAX_EXHAUSTIVE_PORTS) {
+            throw new IllegalArgumentException("Exhaustive counting supports up to " + MAX_EXHAUSTIVE_PORTS + " ports, got " + ports);
+        }
+        int[] pathLinks = new int[ports * ports * Math.max(hops, 1)];
+        int[] links = new int[fabric.getColumns()];
+        for (int source = 0; source < ports; source++) {            //route every pair once up front
+            for (int destination = 0; destination < ports; destination++) {
+                int offset = (source * ports + destination) * Math.max(hops, 1);
+                int code = router.route(source, destination);
+                if (code == Router.NO_ROUTE) {
+                    pathLinks[offset] = Fabric.NONE;
+                } else {
+                    fabric.walk(source, code, links);
+                    System.arraycopy(links, 0, pathLinks, offset, hops);
+                }
+            }
+        }
+        return ForkJoinPool.commonPool().invoke(new CountTask(pathLinks, 0, (1 << ports) - 1, new boolean[fabric.size() * 2]));
+    }
+
+    /**
+     * Per-thread working memory, reused across permutations through a generation counter instead of clearing
+     */
+    private class Scratch {
+
+        private final int[] used = new int[fabric.size() * 2];     //generation in which each link was taken
+        private final int[] reported = new int[fabric.size() * 2]; //generation in which each link was reported
+        private final int[] links = new int[fabric.getColumns()];
+        private final int[] conflicts = new int[fabric.size() * 2];
+        private final int[] unroutable = new int[ports];
+        private int generation;
+
+        private PermutationResult analyze(int[] permutation) {
+
+            if (permutation.length != ports) {
+                throw new IllegalArgumentException("Permutation must have " + ports + " entries, got " + permutation.length);
+            }
+            generation++;
+            int conflictCount = 0;
+            int unroutableCount = 0;
+            for (int source = 0; source < ports; source++) {
+                int code = router.route(source, permutation[source]);
+                if (code == Router.NO_ROUTE) {
+                    unroutable[unroutableCount++] = source;
+                    continue;
+                }
+                fabric.walk(source, code, links);
+                for (int k = 0; k < hops; k++) {
+                    int link = links[k];
+                    if (used[link] != generation) {
+                        used[link] = generation;
+                    } else if (reported[link] != generation) {
+                        reported[link] = generation;
+                        conflicts[conflictCount++] = link;
+                    }
+                }
+            }
+            int[] conflictingLinks = Arrays.copyOf(conflicts, conflictCount);
+            Arrays.sort(conflictingLinks);
+            return new PermutationResult(permutation, conflictingLinks, Arrays.copyOf(unroutable, unroutableCount));
+        }
+    }
+
+    private class BatchTask extends RecursiveAction {
+
+        private final int[][] permutations;
+        private final PermutationResult[] results;
+        private final int from;
+        private final int to;
+
+        private BatchTask(int[][] permutations, PermutationResult[] results, int from, int to) {
+            this.permutations = permutations;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (to - from <= BATCH_THRESHOLD) {
+                Scratch scratch = new Scratch();
+                for (int i = from; i < to; i++) {
+                    results[i] = scratch.analyze(permutations[i]);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new BatchTask(permutations, results, from, middle), new BatchTask(permutations, results, middle, to));
+        }
+    }
+
+    private class CountTask extends RecursiveTask<Long> {
+
+        private final int[] pathLinks;                              //internal links of every (source, destination) route
+        private final int source;                                   //next source to assign
+        private final int free;                                     //destinations not assigned yet, as a bit mask
+        private final boolean[] used;                               //links taken by the sources already assigned
+
+        private CountTask(int[] pathLinks, int source, int free, boolean[] used) {
+            this.pathLinks = pathLinks;
+            this.source = source;
+            this.free = free;
+            this.used = used;
+        }
+
+        @Override
+        protected Long compute() {
+
+            if (source >= SPLIT_DEPTH || source == ports) {
+                return count(source, free);
+            }
+            List<CountTask> tasks = new ArrayList<>();
+            for (int destination = 0; destination < ports; destination++) {
+                if ((free >>> destination & 1) != 0 && fits(source, destination)) {
+                    boolean[] copy = used.clone();
+                    mark(copy, source, destination, true);
+                    tasks.add(new CountTask(pathLinks, source + 1, free & ~(1 << destination), copy));
+                }
+            }
+            long count = 0;
+            for (CountTask task : invokeAll(tasks)) {
+                count += task.join();
+            }
+            return count;
+        }
+
+        private long count(int source, int free) {
+
+            if (source == ports) {
+                return 1;
+            }
+            long count = 0;
+            for (int destination = 0; destination < ports; destination++) {
+                if ((free >>> destination & 1) != 0 && fits(source, destination)) {
+                    mark(used, source, destination, true);
+                    count += count(source + 1, free & ~(1 << destination));
+                    mark(used, source, destination, false);
+                }
+            }
+            return count;
+        }
+
+        private boolean fits(int source, int destination) {
+            int offset = (source * ports + destination) * Math.max(hops, 1);
+            if (pathLinks[offset] == Fabric.NONE) {
+                return false;
+            }
+            for (int k = 0; k < hops; k++) {
+                if (used[pathLinks[offset + k]]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void mark(boolean[] used, int source, int destination, boolean value) {
+            int offset = (source * ports + destination) * Math.max(hops, 1);
+            for (int k = 0; k < hops; k++) {
+                used[pathLinks[offset + k]] = value;
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package mpls;
+
+import lombok.Getter;
+
+/**
+ * Outcome of routing a whole permutation at once with {@link PermutationAnalyzer}
+ */
+@Getter
+public class PermutationResult {
+
+    private final int[] permutation;                                //destination of every source
+    private final int[] conflictingLinks;                           //internal links claimed by more than one source
+    private final int[] unroutableSources;                          //sources with no route to their destination
+
+    public PermutationResult(int[] permutation, int[] conflictingLinks, int[] unroutableSources) {
+        this.permutation = permutation;
+        this.conflictingLinks = conflictingLinks;
+        this.unroutableSources = unroutableSources;
+    }
+
+    /**
+     * @return whether every source reaches its destination without sharing a link with any other source
+     */
+    public boolean isConflictFree() {
+        return conflictingLinks.length == 0 && unroutableSources.length == 0;
+    }
+}
@@ -0,0 +1,225 @@
+package mpls;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Embedded HTTP server answering route queries on a {@link Topology}, for many clients at once
+ *
+ * <p>Requests only read the topology, which every request takes once from a volatile field and uses throughout, so
+ * the read path needs no locks and a newly published topology never mixes with the previous one.</p>
+ * <pre>
+ * GET /route?source=1&amp;destination=5     code and traversed elements of a route
+ * GET /destination?source=1&amp;code=010    destination reached by a code
+ * GET /topology                          size and validity of the topology being served
+ * </pre>
+ */
+public class RouteServer {
+
+    public static final int DEFAULT_PORT = 8080;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private volatile Topology topology;
+
+    public RouteServer(Topology topology, InetSocketAddress address, int threads) throws IOException {
+        this.topology = topology;
+        this.server = HttpServer.create(address, 0);
+        this.executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory());
+        server.setExecutor(executor);
+        server.createContext("/route", this::route);
+        server.createContext("/destination", this::destination);
+        server.createContext("/topology", this::topology);
+    }
+
+    /**
+     * Start serving on the loopback interface
+     *
+     * <p>Arguments: {@code [--port 8080] [--wiring conn.txt [--watch]] [--threads n]}; {@code --watch} reloads the
+     * wiring file whenever it changes (see {@link TopologyReloader}). Without a wiring file the bundled
+     * {@link Topology#DEFAULT_WIRING} is served. Snapshots are kept in the directory named by the
+     * {@link Topology#SNAPSHOT_DIRECTORY_PROPERTY} system property, if any.</p>
+     */
+    public static void main(String[] args) throws IOException {
+
+        int port = DEFAULT_PORT;
+        String wiring = null;
+        boolean watch = false;
+        int threads = Runtime.getRuntime().availableProcessors() * 4;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--wiring":
+                    wiring = args[++i];
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--watch":
+                    watch = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (watch && wiring == null) {
+            throw new IllegalArgumentException("--watch needs a --wiring file");
+        }
+
+        Metrics.register();
+        String snapshotDirectory = System.getProperty(Topology.SNAPSHOT_DIRECTORY_PROPERTY);
+        Topology topology = Topology.load(wiring == null ? WiringParser.readResource(Topology.DEFAULT_WIRING)
+                : WiringParser.map(Paths.get(wiring)), snapshotDirectory);
+        Metrics.get().recordTopology(topology.getFabric());
+        RouteServer server = new RouteServer(topology, new InetSocketAddress(InetAddress.getLoopbackAddress(), port), threads);
+        if (watch) {                                                //swap in every valid change of the wiring
+            TopologyReloader.start(Paths.get(wiring), topology, snapshotDirectory, server::publish);
+        }
+        server.start();
+        System.out.println("Serving " + topology.getFabric().ports() + " ports on " + server.getAddress());
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    public Topology getTopology() {
+        return topology;
+    }
+
+    /**
+     * Serve another topology from now on; requests already running finish on the one they started with
+     *
+     * @param topology compiled topology, never modified afterwards
+     */
+    public void publish(Topology topology) {
+        this.topology = topology;
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+
+        Topology topology = this.topology;                          //one consistent view for the whole request
+        Fabric fabric = topology.getFabric();
+        URI uri = exchange.getRequestURI();
+        int source = intParameter(uri, "source", fabric.ports());
+        int destination = intParameter(uri, "destination", fabric.ports());
+        if (source < 0 || destination < 0) {
+            send(exchange, 400, "{\"error\":\"source and destination must be flags between 0 and " + (fabric.ports() - 1) + "\"}");
+            return;
+        }
+
+        long start = System.nanoTime();
+        int code = topology.getRouter().route(source, destination);
+        Metrics.get().recordRoute(start, code != Router.NO_ROUTE);
+        if (code == Router.NO_ROUTE) {
+            send(exchange, 404, "{\"source\":" + source + ",\"destination\":" + destination + ",\"error\":\"No connection found!\"}");
+            return;
+        }
+        int[] links = new int[fabric.getColumns()];
+        fabric.walk(source, code, links);
+        StringBuilder sb = new StringBuilder(64 + links.length * 8);
+        sb.append("{\"source\":").append(source).append(",\"destination\":").append(destination)
+                .append(",\"code\":\"").append(RouteTable.format(code, fabric.getColumns())).append("\",\"path\":[");
+        for (int k = 0; k < links.length; k++) {
+            int element = links[k] >> 1;
+            sb.append(k == 0 ? "" : ",").append('[').append(fabric.row(element)).append(',').append(fabric.column(element)).append(']');
+        }
+        send(exchange, 200, sb.append("]}").toString());
+    }
+
+    private void destination(HttpExchange exchange) throws IOException {
+
+        Topology topology = this.topology;
+        Fabric fabric = topology.getFabric();
+        URI uri = exchange.getRequestURI();
+        int source = intParameter(uri, "source", fabric.ports());
+        String codeParameter = parameter(uri, "code");
+        int code = codeParameter != null && codeParameter.length() == fabric.getColumns() && codeParameter.matches("[01]+")
+                ? Integer.parseInt(codeParameter, 2) : -1;
+        if (source < 0 || code < 0) {
+            send(exchange, 400, "{\"error\":\"source must be a flag and code a " + fabric.getColumns() + " digit binary code\"}");
+            return;
+        }
+        int destination = topology.getRouter().destination(source, code);
+        send(exchange, destination == Fabric.NONE ? 404 : 200, "{\"source\":" + source + ",\"code\":\"" + codeParameter
+                + "\",\"destination\":" + destination + "}");
+    }
+
+    private void topology(HttpExchange exchange) throws IOException {
+
+        Topology topology = this.topology;
+        Fabric fabric = topology.getFabric();
+        send(exchange, 200, "{\"ports\":" + fabric.ports() + ",\"rows\":" + fabric.getRows() + ",\"columns\":" + fabric.getColumns()
+                + ",\"valid\":" + topology.isValid() + ",\"router\":\"" + topology.getRouter().getClass().getSimpleName() + "\"}");
+    }
+
+    /**
+     * @return the parameter as a number in [0, bound), or -1 when it is missing or out of range
+     */
+    private static int intParameter(URI uri, String name, int bound) {
+        String value = parameter(uri, name);
+        if (value == null || value.isEmpty() || value.length() > 9 || !value.chars().allMatch(Character::isDigit)) {
+            return -1;
+        }
+        int number = Integer.parseInt(value);
+        return number < bound ? number : -1;
+    }
+
+    private static String parameter(URI uri, String name) {
+        String query = uri.getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0 && pair.regionMatches(0, name, 0, equals) && equals == name.length()) {
+                return pair.substring(equals + 1);
+            }
+        }
+        return null;
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "route-server-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
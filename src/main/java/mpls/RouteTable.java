@@ -0,0 +1,121 @@
+package mpls;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Precomputed routes of a {@link Fabric}, answering every route query with a single array access
+ *
+ * <p>Codes are packed into an {@code int}, the first crossing being the most significant of
+ * {@link Fabric#getColumns()} bits. The forward table keeps, for every (source, destination) pair, the smallest code
+ * that reaches the destination, and the reverse index keeps, for every (source, code), the destination it reaches.</p>
+ */
+@Getter
+public class RouteTable implements Router {
+
+    private final Fabric fabric;
+    private final int ports;
+    private final int codeBits;
+    private final int[] codes;                                      //ports x ports, code of each (source, destination)
+    private final int[] destinations;                               //ports x 2^codeBits, destination of each (source, code)
+
+    private RouteTable(Fabric fabric) {
+        this.fabric = fabric;
+        this.ports = fabric.ports();
+        this.codeBits = fabric.getColumns();
+        if (codeBits > MAX_COLUMNS || ((long) ports << codeBits) > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("A " + ports + " port fabric with " + codeBits + " stages is too large for a dense route table");
+        }
+        this.codes = new int[ports * ports];
+        this.destinations = new int[ports << codeBits];
+        Arrays.fill(codes, NO_ROUTE);
+        Arrays.fill(destinations, Fabric.NONE);
+    }
+
+    /**
+     * Wrap tables that were computed earlier, e.g. read back from a {@link TopologySnapshot}
+     */
+    RouteTable(Fabric fabric, int[] codes, int[] destinations) {
+        this.fabric = fabric;
+        this.ports = fabric.ports();
+        this.codeBits = fabric.getColumns();
+        this.codes = codes;
+        this.destinations = destinations;
+    }
+
+    /**
+     * Enumerate every path of the fabric once and index it both ways
+     *
+     * @param fabric wired fabric
+     * @return the route table
+     */
+    public static RouteTable build(Fabric fabric) {
+        return build(fabric, () -> false);
+    }
+
+    /**
+     * @param fabric    wired fabric
+     * @param cancelled checked before every source
+     * @return the route table
+     * @throws CancellationException once {@code cancelled} answers true
+     */
+    public static RouteTable build(Fabric fabric, BooleanSupplier cancelled) {
+
+        RouteTable table = new RouteTable(fabric);
+        int[] destinations = table.destinations;
+        for (int source = 0; source < table.ports; source++) {
+            if (cancelled.getAsBoolean()) {
+                throw new CancellationException("Route table build cancelled");
+            }
+            int base = source << table.codeBits;
+            fabric.forEachPath(source, (code, destination) -> destinations[base | code] = destination);
+            table.index(source);
+        }
+        return table;
+    }
+
+    @Override
+    public int route(int source, int destination) {
+        if (source < 0 || source >= ports || destination < 0 || destination >= ports) {  //would read another row
+            return NO_ROUTE;
+        }
+        return codes[source * ports + destination];
+    }
+
+    @Override
+    public int destination(int source, int code) {
+        if (source < 0 || source >= ports || code >>> codeBits != 0) {  //would read another row
+            return Fabric.NONE;
+        }
+        return destinations[source << codeBits | code];
+    }
+
+    /**
+     * @return the code as a string of '0' and '1', first crossing first
+     */
+    public static String format(int code, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = ((code >>> (length - 1 - i)) & 1) == 0 ? '0' : '1';
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Build the forward row of one source out of its reverse index, keeping the smallest code per destination
+     */
+    private void index(int source) {
+
+        int base = source << codeBits;
+        int row = source * ports;
+        for (int code = 0; code < 1 << codeBits; code++) {
+            int destination = destinations[base | code];
+            if (destination != Fabric.NONE && codes[row + destination] == NO_ROUTE) {
+                codes[row + destination] = code;
+            }
+        }
+    }
+}
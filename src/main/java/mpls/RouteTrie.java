@@ -0,0 +1,119 @@
+package mpls;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * Routed codes of one source to a set of destinations, sorted so they can be walked as a binary trie over the fabric
+ *
+ * <p>Once sorted, the destinations sharing the first {@code k} code bits, and therefore the first {@code k} stages of
+ * their paths, form one contiguous range. {@link #walk(BranchVisitor)} splits each range on its next bit, one element
+ * per shared prefix, so a shared stretch of path is followed once for the whole range instead of once per
+ * destination. Used by {@link MulticastRouter} for its trees and by {@link LinkLoadAnalyzer} for its loads.</p>
+ */
+@Getter
+public class RouteTrie {
+
+    private final Fabric fabric;
+    private final int source;
+    private final int[] codes;                                      //routed codes, in increasing order
+    private final int[] destinations;                               //destination of each code
+    private final int[] unreachable;                                //destinations without a route, in the given order
+
+    private RouteTrie(Fabric fabric, int source, int[] codes, int[] destinations, int[] unreachable) {
+        this.fabric = fabric;
+        this.source = source;
+        this.codes = codes;
+        this.destinations = destinations;
+        this.unreachable = unreachable;
+    }
+
+    /**
+     * Receives every branch of {@link #walk(BranchVisitor)}, depth first, bit 0 before bit 1
+     */
+    public interface BranchVisitor {
+
+        /**
+         * @param visit   number of the element visit, counting from 0 in walk order; an element of a multi-path fabric
+         *                may be visited once per prefix reaching it
+         * @param element element visited
+         * @param out     output taken by the codes {@code [from, to)}
+         */
+        void branch(int visit, int element, int out, int from, int to);
+    }
+
+    /**
+     * @param router       router choosing the code of every destination
+     * @param source       source flag
+     * @param destinations destination flags, without repetitions
+     * @param count        number of destinations to route, from the start of the array
+     * @return the sorted codes
+     */
+    public static RouteTrie route(Router router, int source, int[] destinations, int count) {
+
+        long[] keyed = new long[count];                             //code in the high half, destination in the low half
+        int[] unreachable = new int[count];
+        int routed = 0;
+        int unreachableCount = 0;
+        for (int i = 0; i < count; i++) {
+            int code = router.route(source, destinations[i]);
+            if (code == Router.NO_ROUTE) {
+                unreachable[unreachableCount++] = destinations[i];
+            } else {
+                keyed[routed++] = (long) code << 32 | destinations[i];
+            }
+        }
+        Arrays.sort(keyed, 0, routed);
+        int[] codes = new int[routed];
+        int[] reached = new int[routed];
+        for (int i = 0; i < routed; i++) {
+            codes[i] = (int) (keyed[i] >>> 32);
+            reached[i] = (int) keyed[i];
+        }
+        return new RouteTrie(router.getFabric(), source, codes, reached, Arrays.copyOf(unreachable, unreachableCount));
+    }
+
+    /**
+     * Walk the trie from the source, reporting every output taken by a non-empty range of codes, the final column
+     * included
+     *
+     * @param visitor receives the branches
+     * @return number of element visits
+     */
+    public int walk(BranchVisitor visitor) {
+        if (codes.length == 0) {
+            return 0;
+        }
+        int[] visits = new int[1];
+        split(visitor, visits, fabric.sourceElement(source), source & 1, 0, 0, codes.length);
+        return visits[0];
+    }
+
+    /**
+     * @param element element reached by the codes {@code [from, to)}, which share their first {@code stage} bits
+     * @param port    input port of the element
+     */
+    private void split(BranchVisitor visitor, int[] visits, int element, int port, int stage, int from, int to) {
+
+        int shift = fabric.getColumns() - 1 - stage;
+        int middle = from;
+        while (middle < to && ((codes[middle] >>> shift) & 1) == 0) {   //bit 0 first, the range is sorted
+            middle++;
+        }
+        int visit = visits[0]++;
+        for (int bit = 0; bit < 2; bit++) {
+            int lo = bit == 0 ? from : middle;
+            int hi = bit == 0 ? middle : to;
+            if (lo == hi) {
+                continue;
+            }
+            int out = port ^ bit;
+            visitor.branch(visit, element, out, lo, hi);
+            if (!fabric.isFinal(element)) {
+                int link = Fabric.link(element, out);
+                split(visitor, visits, fabric.getNext()[link], fabric.getNextIsDown().get(link) ? Fabric.DOWN : Fabric.UP, stage + 1, lo, hi);
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package mpls;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Answers route queries on a {@link Fabric}, in both directions
+ */
+public interface Router {
+
+    int NO_ROUTE = -1;
+    int MAX_COLUMNS = Integer.SIZE - 1;                             //one code bit per column, codes stay non-negative ints
+
+    Fabric getFabric();
+
+    /**
+     * @return the code leading from source to destination, or {@link #NO_ROUTE} when there is none or either flag is
+     * outside of {@code [0, ports)}
+     */
+    int route(int source, int destination);
+
+    /**
+     * @return the destination reached by following a code from a source, or {@link Fabric#NONE} when the code runs
+     * into an unwired link, the source is outside of {@code [0, ports)} or the code is wider than the fabric
+     */
+    int destination(int source, int code);
+
+    /**
+     * Pick the cheapest router for a fabric: destination tag routing for regular wirings, closed form routes for
+     * Benes wirings, and a {@link RouteTable} built by enumerating every path for the irregular ones
+     *
+     * @param fabric wired fabric
+     * @return the router
+     * @throws IllegalArgumentException if the fabric has more than {@link #MAX_COLUMNS} columns, too many for a code
+     */
+    static Router of(Fabric fabric) {
+        return of(fabric, () -> false);
+    }
+
+    /**
+     * @param fabric    wired fabric
+     * @param cancelled checked while a {@link RouteTable} is built, the other routers are built in O(size)
+     * @return the router
+     * @throws java.util.concurrent.CancellationException once {@code cancelled} answers true
+     */
+    static Router of(Fabric fabric, BooleanSupplier cancelled) {
+        if (fabric.getColumns() > MAX_COLUMNS) {
+            throw new IllegalArgumentException("Routes of a " + fabric.getColumns() + " column fabric do not fit in a code of "
+                    + MAX_COLUMNS + " bits");
+        }
+        Router router = SelfRouter.of(fabric);
+        if (router == null) {
+            router = BenesRouter.of(fabric);
+        }
+        return router != null ? router : RouteTable.build(fabric, cancelled);
+    }
+}
@@ -0,0 +1,113 @@
+package mpls;
+
+import lombok.Getter;
+
+import java.util.BitSet;
+
+/**
+ * Destination tag routing for Omega, baseline, butterfly and every other wiring in which each element splits the
+ * destinations it reaches by a single destination bit
+ *
+ * <p>The bit is found once per element, so a route costs one step per column, O(log N), with no table at all.</p>
+ */
+public class SelfRouter implements TagRouter {
+
+    @Getter
+    private final Fabric fabric;
+    private final int[] tagBit;                                     //destination bit deciding the output of each element
+    private final BitSet upWhenSet;                                 //whether a set tag bit selects the up output
+
+    private SelfRouter(Fabric fabric, int[] tagBit, BitSet upWhenSet) {
+        this.fabric = fabric;
+        this.tagBit = tagBit;
+        this.upWhenSet = upWhenSet;
+    }
+
+    /**
+     * Find the deciding destination bit of every element, walking the columns from right to left
+     *
+     * <p>Each element output is summarised by the AND and the OR of the destinations reachable through it; the bits
+     * on which both agree are common to all of them. An element self-routes when some bit is common on both outputs
+     * with a different value.</p>
+     *
+     * @param fabric wired fabric
+     * @return the router, or null if the wiring does not allow destination tag routing
+     */
+    public static SelfRouter of(Fabric fabric) {
+
+        int size = fabric.size();
+        int[] and = new int[size];                                  //AND of all destinations reachable from each element
+        int[] or = new int[size];                                   //OR of all destinations reachable from each element
+        int[] tagBit = new int[size];
+        BitSet upWhenSet = new BitSet(size);
+
+        for (int column = fabric.getColumns() - 1; column >= 0; column--) {
+            for (int row = 0; row < fabric.getRows(); row++) {
+                int element = fabric.index(row, column);
+                int andUp, orUp, andDown, orDown;
+                if (column == fabric.getColumns() - 1) {
+                    andUp = orUp = row * 2;
+                    andDown = orDown = row * 2 + 1;
+                } else {
+                    int up = fabric.target(element, Fabric.UP);
+                    int down = fabric.target(element, Fabric.DOWN);
+                    if (up == Fabric.NONE || down == Fabric.NONE) {
+                        return null;
+                    }
+                    andUp = and[up];
+                    orUp = or[up];
+                    andDown = and[down];
+                    orDown = or[down];
+                }
+                int deciding = ~(andUp ^ orUp) & ~(andDown ^ orDown) & (andUp ^ andDown);
+                if (deciding == 0) {                                //both outputs reach destinations of every kind
+                    return null;
+                }
+                tagBit[element] = Integer.numberOfTrailingZeros(deciding);
+                upWhenSet.set(element, ((andUp >>> tagBit[element]) & 1) == 1);
+                and[element] = andUp & andDown;
+                or[element] = orUp | orDown;
+            }
+        }
+        return new SelfRouter(fabric, tagBit, upWhenSet);
+    }
+
+    @Override
+    public int route(int source, int destination) {
+
+        if (source < 0 || source >= fabric.ports() || destination < 0 || destination >= fabric.ports()) {
+            return NO_ROUTE;
+        }
+        int columns = fabric.getColumns();
+        int element = fabric.sourceElement(source);
+        int port = source & 1;
+        int code = 0;
+        for (int k = 0; ; k++) {
+            int out = output(element, destination);
+            code = code << 1 | (port ^ out);
+            if (k == columns - 1) {                                 //make sure the tag really led to the destination
+                return fabric.row(element) * 2 + out == destination ? code : NO_ROUTE;
+            }
+            port = fabric.targetPort(element, out);
+            element = fabric.target(element, out);
+        }
+    }
+
+    @Override
+    public int output(int source, int column, int element, int port, int destination) {
+        return output(element, destination);
+    }
+
+    private int output(int element, int destination) {
+        boolean set = ((destination >>> tagBit[element]) & 1) == 1;
+        return set == upWhenSet.get(element) ? Fabric.UP : Fabric.DOWN;
+    }
+
+    @Override
+    public int destination(int source, int code) {
+        if (source < 0 || source >= fabric.ports() || code >>> fabric.getColumns() != 0) {  //negative or wider code
+            return Fabric.NONE;
+        }
+        return fabric.walk(source, code, null);
+    }
+}
@@ -0,0 +1,52 @@
+package mpls;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Parameters of a {@link Simulator} run; every field has a usable default
+ */
+@Getter
+@Setter
+public class SimulationConfig {
+
+    private TrafficPattern pattern = TrafficPattern.UNIFORM;
+    private double load = 0.5;                      //probability that a source offers a packet in a slot
+    private double hotspotFraction = 0.2;           //share of the packets sent to the hotspot
+    private int hotspotDestination = 0;
+    private int bufferSize = 4;                     //packets each link can hold
+    private int slots = 10000;
+    private int warmupSlots = 1000;                 //packets offered before this slot are not measured
+    private long seed = 1;
+    private int[] traceSlots = new int[0];          //TRACE packets, in increasing slot order
+    private int[] traceSources = new int[0];
+    private int[] traceDestinations = new int[0];
+
+    public SimulationConfig() {
+
+    }
+
+    public SimulationConfig(TrafficPattern pattern, double load, int bufferSize, int slots) {
+        this.pattern = pattern;
+        this.load = load;
+        this.bufferSize = bufferSize;
+        this.slots = slots;
+    }
+
+    /**
+     * Replay recorded packets instead of generating them
+     *
+     * @param slots        slot in which each packet is offered, in increasing order
+     * @param sources      source flag of each packet
+     * @param destinations destination flag of each packet
+     */
+    public void setTrace(int[] slots, int[] sources, int[] destinations) {
+        if (slots.length != sources.length || slots.length != destinations.length) {
+            throw new IllegalArgumentException("Trace columns have different lengths");
+        }
+        this.pattern = TrafficPattern.TRACE;
+        this.traceSlots = slots;
+        this.traceSources = sources;
+        this.traceDestinations = destinations;
+    }
+}
@@ -0,0 +1,83 @@
+package mpls;
+
+import lombok.Getter;
+
+/**
+ * Measured throughput, latency and losses of one or more merged {@link Simulator} runs
+ */
+@Getter
+public class SimulationResult {
+
+    private final int ports;
+    private final long measuredSlots;               //slots after warmup, summed over the runs
+    private final long offered;
+    private final long delivered;
+    private final long dropped;                     //lost to a full buffer, or without any route
+    private final long[] latencyHistogram;          //delivered packets per latency in slots
+
+    public SimulationResult(int ports, long measuredSlots, long offered, long delivered, long dropped, long[] latencyHistogram) {
+        this.ports = ports;
+        this.measuredSlots = measuredSlots;
+        this.offered = offered;
+        this.delivered = delivered;
+        this.dropped = dropped;
+        this.latencyHistogram = latencyHistogram;
+    }
+
+    /**
+     * @return delivered packets per output port and slot, between 0 and 1
+     */
+    public double getThroughput() {
+        return measuredSlots == 0 ? 0 : (double) delivered / ((double) ports * measuredSlots);
+    }
+
+    public double getDropRate() {
+        return offered == 0 ? 0 : (double) dropped / offered;
+    }
+
+    public double getMeanLatency() {
+        long sum = 0;
+        for (int latency = 0; latency < latencyHistogram.length; latency++) {
+            sum += latency * latencyHistogram[latency];
+        }
+        return delivered == 0 ? 0 : (double) sum / delivered;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the smallest latency, in slots, that at least that share of the delivered packets did not exceed
+     */
+    public int latencyPercentile(double percentile) {
+        long total = 0;
+        for (long count : latencyHistogram) {
+            total += count;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int latency = 0; latency < latencyHistogram.length; latency++) {
+            seen += latencyHistogram[latency];
+            if (seen >= rank && seen > 0) {
+                return latency;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the totals of both results, as if they had been one run
+     */
+    public SimulationResult merge(SimulationResult other) {
+        long[] histogram = new long[Math.max(latencyHistogram.length, other.latencyHistogram.length)];
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = (i < latencyHistogram.length ? latencyHistogram[i] : 0) + (i < other.latencyHistogram.length ? other.latencyHistogram[i] : 0);
+        }
+        return new SimulationResult(ports, measuredSlots + other.measuredSlots, offered + other.offered,
+                delivered + other.delivered, dropped + other.dropped, histogram);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("throughput %.4f, drop rate %.4f, latency mean %.2f p50 %d p90 %d p99 %d slots",
+                getThroughput(), getDropRate(), getMeanLatency(), latencyPercentile(50), latencyPercentile(90), latencyPercentile(99));
+    }
+}
@@ -0,0 +1,207 @@
+package mpls;
+
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Slotted discrete-event simulation of labelled packets crossing the fabric
+ *
+ * <p>A packet is labelled at its source with the route code and every stage swaps the label, consuming its leading
+ * bit to choose the output ({@code out = in ^ bit}). Every link holds a FIFO buffer of
+ * {@link SimulationConfig#getBufferSize()} packets and forwards one packet per slot; a packet whose next buffer is
+ * full is dropped, and each destination port delivers one packet per slot. Independent Monte Carlo runs execute in
+ * parallel, each with its own seed.</p>
+ */
+public class Simulator {
+
+    private final Router router;
+    private final Fabric fabric;
+    private final SimulationConfig config;
+
+    public Simulator(Router router, SimulationConfig config) {
+        this.router = router;
+        this.fabric = router.getFabric();
+        this.config = config;
+    }
+
+    /**
+     * Run independent replications in parallel, seeded {@code seed, seed + 1, ...}, and merge their measurements
+     *
+     * @param runs number of replications
+     * @return merged result
+     */
+    public SimulationResult runAll(int runs) {
+        return IntStream.range(0, runs).parallel()
+                .mapToObj(run -> run(config.getSeed() + run))
+                .reduce(SimulationResult::merge)
+                .orElseThrow(() -> new IllegalArgumentException("At least one run is needed"));
+    }
+
+    /**
+     * @param seed seed of the traffic generator
+     * @return measurements of a single run
+     */
+    public SimulationResult run(long seed) {
+        return new Run(seed).simulate();
+    }
+
+    /**
+     * State of one replication: a ring buffer per link and a pool of packets, all in primitive arrays
+     */
+    private class Run {
+
+        private final SplittableRandom random;
+        private final int ports = fabric.ports();
+        private final int columns = fabric.getColumns();
+        private final int capacity = config.getBufferSize();
+        private final int labelMask = (1 << columns) - 1;
+        private final int[] queue;                                  //packet ids, capacity slots per link
+        private final int[] head;
+        private final int[] size;
+        private final int[] label;                                  //per packet: remaining route code
+        private final int[] born;                                   //per packet: slot in which it was offered
+        private final int[] free;                                   //stack of unused packet ids
+        private int freeCount;
+        private final long[] latencyHistogram;
+        private long offered;
+        private long delivered;
+        private long dropped;
+
+        private Run(long seed) {
+            int links = fabric.size() * 2;
+            int packets = links * capacity;
+            this.random = new SplittableRandom(seed);
+            this.queue = new int[packets];
+            this.head = new int[links];
+            this.size = new int[links];
+            this.label = new int[packets];
+            this.born = new int[packets];
+            this.free = new int[packets];
+            for (int id = 0; id < packets; id++) {
+                free[freeCount++] = id;
+            }
+            this.latencyHistogram = new long[Math.max(1, config.getSlots())];  //no packet stays longer than the run
+        }
+
+        private SimulationResult simulate() {
+
+            int trace = 0;
+            for (int slot = 0; slot < config.getSlots(); slot++) {
+                deliver(slot);
+                for (int column = columns - 2; column >= 0; column--) {  //back to front, one hop per slot
+                    forward(column);
+                }
+                if (config.getPattern() == TrafficPattern.TRACE) {
+                    for (; trace < config.getTraceSlots().length && config.getTraceSlots()[trace] <= slot; trace++) {
+                        if (config.getTraceSlots()[trace] == slot) {
+                            inject(config.getTraceSources()[trace], config.getTraceDestinations()[trace], slot);
+                        }
+                    }
+                } else {
+                    for (int source = 0; source < ports; source++) {
+                        if (random.nextDouble() < config.getLoad()) {
+                            inject(source, destination(source), slot);
+                        }
+                    }
+                }
+            }
+            return new SimulationResult(ports, Math.max(0, config.getSlots() - config.getWarmupSlots()),
+                    offered, delivered, dropped, latencyHistogram);
+        }
+
+        private int destination(int source) {
+            switch (config.getPattern()) {
+                case HOTSPOT:
+                    return random.nextDouble() < config.getHotspotFraction() ? config.getHotspotDestination() : random.nextInt(ports);
+                case BIT_REVERSAL:
+                    return Integer.reverse(source) >>> (Integer.SIZE - Integer.numberOfTrailingZeros(ports)) & (ports - 1);
+                default:
+                    return random.nextInt(ports);
+            }
+        }
+
+        /**
+         * Final column: every destination port takes one packet off its link
+         */
+        private void deliver(int slot) {
+            for (int row = 0; row < fabric.getRows(); row++) {
+                int element = fabric.index(row, columns - 1);
+                for (int port = Fabric.UP; port <= Fabric.DOWN; port++) {
+                    int link = Fabric.link(element, port);
+                    if (size[link] > 0) {
+                        int packet = poll(link);
+                        if (born[packet] >= config.getWarmupSlots()) {
+                            delivered++;
+                            latencyHistogram[slot - born[packet]]++;   //one slot per stage when nothing queues
+                        }
+                        free[freeCount++] = packet;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Move the head packet of every link leaving the given column into the buffer of its next output
+         */
+        private void forward(int column) {
+            for (int row = 0; row < fabric.getRows(); row++) {
+                int element = fabric.index(row, column);
+                for (int port = Fabric.UP; port <= Fabric.DOWN; port++) {
+                    int link = Fabric.link(element, port);
+                    if (size[link] == 0) {
+                        continue;
+                    }
+                    int packet = poll(link);
+                    int target = fabric.getNext()[link];
+                    int in = fabric.getNextIsDown().get(link) ? Fabric.DOWN : Fabric.UP;
+                    enqueue(packet, target, in);
+                }
+            }
+        }
+
+        private void inject(int source, int destination, int slot) {
+
+            boolean measured = slot >= config.getWarmupSlots();
+            if (measured) {
+                offered++;
+            }
+            int code = router.route(source, destination);
+            if (code == Router.NO_ROUTE || freeCount == 0) {
+                if (measured) {
+                    dropped++;
+                }
+                return;
+            }
+            int packet = free[--freeCount];
+            label[packet] = code;
+            born[packet] = slot;
+            enqueue(packet, fabric.sourceElement(source), source & 1);
+        }
+
+        /**
+         * Label swap at an element: the leading label bit picks the output, the rest travels on
+         */
+        private void enqueue(int packet, int element, int in) {
+
+            int out = in ^ ((label[packet] >>> (columns - 1)) & 1);
+            label[packet] = (label[packet] << 1) & labelMask;
+            int link = Fabric.link(element, out);
+            if (size[link] == capacity) {
+                if (born[packet] >= config.getWarmupSlots()) {
+                    dropped++;
+                }
+                free[freeCount++] = packet;
+                return;
+            }
+            queue[link * capacity + (head[link] + size[link]) % capacity] = packet;
+            size[link]++;
+        }
+
+        private int poll(int link) {
+            int packet = queue[link * capacity + head[link]];
+            head[link] = (head[link] + 1) % capacity;
+            size[link]--;
+            return packet;
+        }
+    }
+}
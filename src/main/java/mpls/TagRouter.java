@@ -0,0 +1,20 @@
+package mpls;
+
+/**
+ * Router deciding the output of every element from a single destination bit, or from none at all
+ *
+ * <p>The output at an element does not depend on the rest of the route, so a group of destinations can be split
+ * element by element as it goes through the fabric, see {@link MulticastRouter}.</p>
+ */
+public interface TagRouter extends Router {
+
+    /**
+     * @param source      source flag of the route
+     * @param column      column of the element
+     * @param element     element reached by the route
+     * @param port        input port of the element
+     * @param destination destination flag, in {@code [0, ports)}
+     * @return the output taken towards the destination
+     */
+    int output(int source, int column, int element, int port, int destination);
+}
@@ -0,0 +1,109 @@
+package mpls;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Everything computed out of one wiring: the fabric, the router answering queries on it and its validation
+ *
+ * <p>None of its arrays is written once the topology is built, so a topology published through a final or volatile
+ * field can be queried from any number of threads without locks.</p>
+ */
+@Getter
+public class Topology {
+
+    public static final String DEFAULT_WIRING = "conn.txt";        //bundled connection file
+    public static final String SNAPSHOT_DIRECTORY_PROPERTY = "mpls.snapshotDir";
+
+    private final Fabric fabric;
+    private final Router router;
+    private final ValidationResult validation;
+
+    public Topology(Fabric fabric, Router router, ValidationResult validation) {
+        this.fabric = fabric;
+        this.router = router;
+        this.validation = validation;
+    }
+
+    /**
+     * Compile the topology of a connection file, going through a {@link TopologySnapshot} when a directory is given
+     *
+     * @param wiring            connection file contents
+     * @param snapshotDirectory directory holding the snapshots, or null to always build
+     * @return the topology
+     * @throws IOException if the snapshot cannot be read, or a {@link WiringFormatException} if the contents are malformed
+     */
+    public static Topology load(ByteBuffer wiring, String snapshotDirectory) throws IOException {
+        if (snapshotDirectory != null) {
+            return TopologySnapshot.loadOrBuild(wiring, Paths.get(snapshotDirectory));
+        }
+        return build(WiringParser.parse(wiring));
+    }
+
+    /**
+     * Route and validate a freshly wired fabric
+     *
+     * @param fabric wired fabric
+     * @return the topology
+     */
+    public static Topology build(Fabric fabric) {
+        return build(fabric, () -> false);
+    }
+
+    /**
+     * Route and validate a freshly wired fabric, giving up as soon as the caller asks to
+     *
+     * @param fabric    wired fabric
+     * @param cancelled checked between sources of the route table and between columns of the validation
+     * @return the topology
+     * @throws CancellationException once {@code cancelled} answers true
+     */
+    public static Topology build(Fabric fabric, BooleanSupplier cancelled) {
+
+        Metrics metrics = Metrics.get();
+        long start = System.nanoTime();
+        Router router = Router.of(fabric, cancelled);
+        metrics.recordPhase(Metrics.Phase.ROUTE_BUILD, start);
+        start = System.nanoTime();
+        ValidationResult validation = Validator.validate(fabric, cancelled);
+        metrics.recordPhase(Metrics.Phase.VALIDATE, start);
+        return new Topology(fabric, router, validation);
+    }
+
+    /**
+     * @return whether the router of the topology routes any permutation by choosing between several paths
+     */
+    public boolean isRearrangeable() {
+        return router instanceof BenesRouter;
+    }
+
+    /**
+     * A wiring is valid when every source reaches every destination, through exactly one path unless the fabric is
+     * rearrangeable
+     *
+     * @return whether the wiring is valid
+     */
+    public boolean isValid() {
+        return validation.isFullAccess() && (isRearrangeable() || validation.isUniquePath());
+    }
+
+    /**
+     * A fabric of Benes size that reaches every destination but is not labelled as {@link Fabric#benes(int)} is
+     * rejected with a leading line saying so, since its duplicate paths would be accepted in the canonical labelling
+     *
+     * @return one line per faulty source, or an empty string for a valid wiring
+     */
+    public String report() {
+        String report = validation.report(isRearrangeable());
+        if (!report.isEmpty() && validation.isFullAccess() && !isRearrangeable() && BenesRouter.isBenesSized(fabric)) {
+            return "Not wired as the canonical Benes network: rows relabelled from Fabric.benes are not routed as "
+                    + "rearrangeable, so several paths per pair are errors.\n" + report;
+        }
+        return report;
+    }
+}
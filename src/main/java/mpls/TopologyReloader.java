@@ -0,0 +1,150 @@
+package mpls;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Watches a connection file and swaps in its new {@link Topology} whenever it changes
+ *
+ * <p>The new wiring is parsed, routed and validated on a background thread while the old topology keeps serving;
+ * only a valid one is published, with a single reference swap, so readers see either the old or the new topology
+ * and never a half-built one. Invalid wirings are rejected and the old topology stays in place.</p>
+ */
+public class TopologyReloader implements Closeable {
+
+    private static final long QUIET_MILLIS = 200;                   //editors write in bursts, wait for the last one
+
+    private final Path wiringFile;
+    private final String snapshotDirectory;
+    private final Consumer<Topology> listener;
+    private final AtomicReference<Topology> current;
+    private final WatchService watchService;
+    private final Thread thread;
+    private volatile byte[] currentHash;
+    private volatile String lastError;
+
+    private TopologyReloader(Path wiringFile, Topology initial, String snapshotDirectory, Consumer<Topology> listener) throws IOException {
+        this.wiringFile = wiringFile.toAbsolutePath();
+        this.snapshotDirectory = snapshotDirectory;
+        this.listener = listener;
+        this.current = new AtomicReference<>(initial);
+        this.currentHash = TopologySnapshot.hash(read(this.wiringFile));
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.wiringFile.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        this.thread = new Thread(this::watch, "topology-reloader");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Start watching a connection file
+     *
+     * @param wiringFile        connection file the initial topology was built from
+     * @param initial           topology being served now
+     * @param snapshotDirectory directory holding the snapshots, or null to always build
+     * @param listener          receives every newly published topology
+     * @return the running reloader
+     */
+    public static TopologyReloader start(Path wiringFile, Topology initial, String snapshotDirectory, Consumer<Topology> listener) throws IOException {
+        TopologyReloader reloader = new TopologyReloader(wiringFile, initial, snapshotDirectory, listener);
+        reloader.thread.start();
+        return reloader;
+    }
+
+    /**
+     * @return the topology published last
+     */
+    public Topology get() {
+        return current.get();
+    }
+
+    /**
+     * @return why the last changed wiring was rejected, or null if it was published
+     */
+    public String getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Read the connection file again and publish its topology if it changed and is valid
+     *
+     * @return whether a new topology was published
+     */
+    public boolean reload() {
+
+        try {
+            ByteBuffer wiring = read(wiringFile);
+            byte[] hash = TopologySnapshot.hash(wiring);
+            if (Arrays.equals(hash, currentHash)) {                 //touched but not changed
+                return false;
+            }
+            Topology topology = Topology.load(wiring, snapshotDirectory);
+            if (!topology.isValid()) {
+                reject(topology.report());
+                return false;
+            }
+            currentHash = hash;
+            lastError = null;
+            current.set(topology);
+            Metrics.get().recordTopology(topology.getFabric());
+            listener.accept(topology);
+            System.out.println("Reloaded " + wiringFile + ": " + topology.getFabric().ports() + " ports");
+            return true;
+        } catch (IOException | RuntimeException e) {
+            reject(e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        thread.interrupt();
+    }
+
+    private void watch() {
+
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                while (key != null) {                               //drain the burst until it goes quiet
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        changed |= wiringFile.getFileName().equals(event.context());
+                    }
+                    key.reset();
+                    key = watchService.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Copy the connection file to the heap; a mapping would fault if an editor truncates the file under it
+     */
+    private static ByteBuffer read(Path wiringFile) throws IOException {
+        return ByteBuffer.wrap(Files.readAllBytes(wiringFile));
+    }
+
+    private void reject(String reason) {
+        lastError = reason;
+        System.err.println("Rejected " + wiringFile + ", keeping the previous topology: " + reason);
+    }
+}
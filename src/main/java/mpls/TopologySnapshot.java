@@ -0,0 +1,222 @@
+package mpls;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Compact binary file holding a compiled {@link Topology}, so that a restart skips parsing, enumeration and validation
+ *
+ * <p>Snapshots are named after the SHA-256 of the connection file they were built from, so a changed wiring simply
+ * misses the cache and is rebuilt. Layout, big endian:</p>
+ * <pre>
+ * int    magic 'MPLS', int version
+ * byte[] SHA-256 of the connection file (32 bytes)
+ * int    rows, int columns
+ * int[]  next, one per link
+ * int    words, long[words] nextIsDown
+ * int    router kind: 0 destination tag or Benes routing (recomputed on load), 1 route table
+ * int[]  codes and int[] destinations of the route table, if any
+ * long[] reached and long[] duplicate bit matrices of the validation
+ * </pre>
+ */
+public class TopologySnapshot {
+
+    public static final String EXTENSION = ".mpls";
+    private static final int MAGIC = 0x4D504C53;
+    private static final int VERSION = 2;                           //bump on any change to the layout or its meaning
+    private static final int COMPUTED_ROUTER = 0;
+    private static final int ROUTE_TABLE = 1;
+
+    private TopologySnapshot() {
+    }
+
+    /**
+     * Load the snapshot of a connection file, or build the topology and store its snapshot when there is none yet
+     *
+     * @param wiringFile        connection file
+     * @param snapshotDirectory directory holding the snapshots
+     * @return the topology of the connection file
+     * @throws IOException if the connection file cannot be read, or a {@link WiringFormatException} if it is malformed
+     */
+    public static Topology loadOrBuild(Path wiringFile, Path snapshotDirectory) throws IOException {
+        return loadOrBuild(WiringParser.map(wiringFile), snapshotDirectory);
+    }
+
+    /**
+     * Load the snapshot of a connection file, or build the topology and store its snapshot when there is none yet
+     *
+     * @param wiring            connection file contents
+     * @param snapshotDirectory directory holding the snapshots
+     * @return the topology of the connection file
+     * @throws IOException if the snapshot cannot be read, or a {@link WiringFormatException} if the contents are malformed
+     */
+    public static Topology loadOrBuild(ByteBuffer wiring, Path snapshotDirectory) throws IOException {
+
+        byte[] hash = hash(wiring);
+        Path snapshotFile = snapshotDirectory.resolve(hex(hash) + EXTENSION);
+        if (Files.isRegularFile(snapshotFile)) {
+            long start = System.nanoTime();
+            Topology topology = read(snapshotFile, hash);
+            if (topology != null) {
+                Metrics.get().recordPhase(Metrics.Phase.SNAPSHOT_LOAD, start);
+                return topology;
+            }
+        }
+
+        Topology topology = Topology.build(WiringParser.parse(wiring));
+        try {                                                       //the snapshot is only a cache, serve without it
+            Files.createDirectories(snapshotDirectory);
+            write(topology, hash, snapshotFile);
+        } catch (IOException | InternalError e) {
+            System.err.println("Could not store the snapshot " + snapshotFile + ": " + e);
+        }
+        return topology;
+    }
+
+    /**
+     * Write a snapshot next to its final name and move it in place, so readers never see half a file
+     *
+     * @param topology     compiled topology
+     * @param hash         SHA-256 of the connection file the topology was built from
+     * @param snapshotFile snapshot to create or replace
+     * @throws IOException if the snapshot cannot be written; no temporary file is left behind
+     */
+    public static void write(Topology topology, byte[] hash, Path snapshotFile) throws IOException {
+
+        Fabric fabric = topology.getFabric();
+        long[] nextIsDown = fabric.getNextIsDown().toLongArray();
+        RouteTable routeTable = topology.getRouter() instanceof RouteTable ? (RouteTable) topology.getRouter() : null;
+        ValidationResult validation = topology.getValidation();
+
+        long size = 4 + 4 + hash.length + 4 + 4 + 4L * fabric.getNext().length + 4 + 8L * nextIsDown.length + 4
+                + (routeTable == null ? 0 : 4L * routeTable.getCodes().length + 4L * routeTable.getDestinations().length)
+                + 8L * validation.getReached().length + 8L * validation.getDuplicate().length;
+
+        Path temporary = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.putInt(MAGIC).putInt(VERSION).put(hash);
+                buffer.putInt(fabric.getRows()).putInt(fabric.getColumns());
+                putInts(buffer, fabric.getNext());
+                buffer.putInt(nextIsDown.length);
+                putLongs(buffer, nextIsDown);
+                buffer.putInt(routeTable == null ? COMPUTED_ROUTER : ROUTE_TABLE);
+                if (routeTable != null) {
+                    putInts(buffer, routeTable.getCodes());
+                    putInts(buffer, routeTable.getDestinations());
+                }
+                putLongs(buffer, validation.getReached());
+                putLongs(buffer, validation.getDuplicate());
+                buffer.force();
+            }
+            Files.move(temporary, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | InternalError e) {                   //a full disk faults the mapping, leave no half file behind
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+    }
+
+    /**
+     * Map a snapshot and copy its arrays out in bulk
+     *
+     * @param snapshotFile snapshot to read
+     * @param hash         SHA-256 the snapshot must have been built from
+     * @return the topology, or null if the snapshot is stale, from another version or truncated
+     */
+    public static Topology read(Path snapshotFile, byte[] hash) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            byte[] storedHash = new byte[hash.length];
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || !Arrays.equals(read(buffer, storedHash), hash)) {
+                return null;
+            }
+
+            int rows = buffer.getInt();
+            int columns = buffer.getInt();
+            int[] next = getInts(buffer, rows * columns * 2);
+            BitSet nextIsDown = BitSet.valueOf(getLongs(buffer, buffer.getInt()));
+            Fabric fabric = new Fabric(rows, columns, next, nextIsDown);
+
+            Router router;
+            if (buffer.getInt() == ROUTE_TABLE) {
+                int ports = fabric.ports();
+                router = new RouteTable(fabric, getInts(buffer, ports * ports), getInts(buffer, ports << columns));
+            } else {
+                router = SelfRouter.of(fabric);
+                if (router == null) {
+                    router = BenesRouter.of(fabric);
+                }
+            }
+
+            int matrixLength = fabric.ports() * ValidationResult.words(fabric.ports());
+            ValidationResult validation = new ValidationResult(fabric.ports(), getLongs(buffer, matrixLength), getLongs(buffer, matrixLength));
+            return router == null ? null : new Topology(fabric, router, validation);
+        } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return SHA-256 of the buffer contents, from its position to its limit; the buffer itself is left untouched
+     */
+    public static byte[] hash(ByteBuffer contents) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(contents.duplicate());
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static byte[] read(ByteBuffer buffer, byte[] bytes) {
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static void putInts(ByteBuffer buffer, int[] values) {
+        buffer.asIntBuffer().put(values);
+        buffer.position(buffer.position() + values.length * 4);
+    }
+
+    private static void putLongs(ByteBuffer buffer, long[] values) {
+        buffer.asLongBuffer().put(values);
+        buffer.position(buffer.position() + values.length * 8);
+    }
+
+    private static int[] getInts(ByteBuffer buffer, int length) {
+        int[] values = new int[length];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + length * 4);
+        return values;
+    }
+
+    private static long[] getLongs(ByteBuffer buffer, int length) {
+        long[] values = new long[length];
+        buffer.asLongBuffer().get(values);
+        buffer.position(buffer.position() + length * 8);
+        return values;
+    }
+}
@@ -0,0 +1,130 @@
+package mpls;
+
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
+
+/**
+ * Loads a connection file off the JavaFX application thread: parse, route and validate, then count every path
+ *
+ * <p>The fabric is handed to the UI as soon as it is parsed, so it can be drawn while the rest is still running.
+ * Progress and the current step are published through the usual {@link Task} properties, and cancelling stops the
+ * work between steps, between sources of the route table and the path log, and between columns of the validation.
+ * Paths are only walked when a log file is given, to write them through a buffered writer; otherwise they are
+ * counted in one pass over the elements.</p>
+ */
+public class TopologyTask extends Task<Topology> {
+
+    public static final String PATH_LOG_PROPERTY = "mpls.pathLog";  //file receiving every path, off when unset
+    private static final int STEPS = 3;                             //parse, route and validate, count or log paths
+
+    private final String wiringName;
+    private final String snapshotDirectory;
+    private final String pathLog;
+    private final Consumer<Fabric> fabricListener;
+
+    /**
+     * @param wiringName        connection file resource
+     * @param snapshotDirectory directory holding the snapshots, or null to always build
+     * @param pathLog           file receiving every path, or null
+     * @param fabricListener    receives the parsed fabric on the JavaFX application thread
+     */
+    public TopologyTask(String wiringName, String snapshotDirectory, String pathLog, Consumer<Fabric> fabricListener) {
+        this.wiringName = wiringName;
+        this.snapshotDirectory = snapshotDirectory;
+        this.pathLog = pathLog;
+        this.fabricListener = fabricListener;
+    }
+
+    @Override
+    protected Topology call() throws IOException {
+
+        updateMessage("Reading " + wiringName);
+        updateProgress(0, STEPS);
+        ByteBuffer wiring = WiringParser.readResource(wiringName);
+        Topology topology = null;
+        Fabric fabric;
+        if (snapshotDirectory != null) {                            //everything comes at once from the snapshot
+            topology = Topology.load(wiring, snapshotDirectory);
+            fabric = topology.getFabric();
+        } else {
+            fabric = WiringParser.parse(wiring);
+        }
+        Platform.runLater(() -> fabricListener.accept(fabric));
+        if (isCancelled()) {
+            return null;
+        }
+
+        updateMessage("Routing and validating " + fabric.ports() + "x" + fabric.ports());
+        updateProgress(1, STEPS);
+        if (topology == null) {
+            try {
+                topology = Topology.build(fabric, this::isCancelled);
+            } catch (CancellationException e) {
+                return null;
+            }
+        }
+        if (isCancelled()) {
+            return null;
+        }
+
+        long paths;
+        if (pathLog == null) {
+            paths = fabric.pathCount();
+        } else {
+            updateMessage("Writing paths to " + pathLog);
+            paths = enumerate(fabric);
+        }
+        if (isCancelled()) {
+            return null;
+        }
+        updateMessage("Ready, " + paths + " paths");
+        updateProgress(STEPS, STEPS);
+        return topology;
+    }
+
+    /**
+     * Walk every path, writing it to the path log
+     *
+     * @return number of paths, or what was written before cancelling
+     */
+    private long enumerate(Fabric fabric) throws IOException {
+
+        long start = System.nanoTime();
+        long[] paths = new long[1];
+        try (Writer log = Files.newBufferedWriter(Paths.get(pathLog), StandardCharsets.US_ASCII)) {
+            StringBuilder line = new StringBuilder();
+            for (int source = 0; source < fabric.ports() && !isCancelled(); source++) {
+                int finalSource = source;
+                IOException[] failure = new IOException[1];
+                fabric.forEachPath(source, (code, destination) -> {
+                    paths[0]++;
+                    if (failure[0] == null) {
+                        line.setLength(0);
+                        line.append(finalSource).append(" -> ").append(destination).append(": ")
+                                .append(RouteTable.format(code, fabric.getColumns())).append('\n');
+                        try {
+                            log.append(line);
+                        } catch (IOException e) {
+                            failure[0] = e;
+                        }
+                    }
+                });
+                if (failure[0] != null) {
+                    throw failure[0];
+                }
+                updateProgress(2 + (source + 1.0) / fabric.ports(), STEPS);
+            }
+        }
+        Metrics.get().recordPhase(Metrics.Phase.ENUMERATE, start);
+        return paths[0];
+    }
+}
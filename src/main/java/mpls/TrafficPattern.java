@@ -0,0 +1,12 @@
+package mpls;
+
+/**
+ * Destination choice of the packets offered by every source in a {@link Simulator} run
+ */
+public enum TrafficPattern {
+
+    UNIFORM,        //every destination equally likely
+    HOTSPOT,        //a share of the packets goes to one destination, the rest is uniform
+    BIT_REVERSAL,   //source s always sends to the bit reversal of s
+    TRACE           //recorded (slot, source, destination) packets replayed as they are
+}
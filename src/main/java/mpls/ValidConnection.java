@@ -3,18 +3,23 @@ package mpls;
 import lombok.Getter;
 import lombok.Setter;
 
+/**
+ * One path through the fabric, as produced by {@link Fabric#paths()}
+ *
+ * <p>The code holds one bit per column, most significant first, see {@link Fabric#walk(int, int, int[])}.</p>
+ */
 @Getter
 @Setter
 public class ValidConnection {
 
     private int source;
     private int destination;
-    private String code;
+    private int code;
 
     public ValidConnection() {
     }
 
-    public ValidConnection(int source, int destination, String code) {
+    public ValidConnection(int source, int destination, int code) {
         this.source = source;
         this.destination = destination;
         this.code = code;
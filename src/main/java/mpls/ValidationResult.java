@@ -0,0 +1,139 @@
+package mpls;
+
+import lombok.Getter;
+
+/**
+ * Outcome of {@link Validator#validate(Fabric)}: which destinations every source misses or reaches more than once
+ *
+ * <p>Both bit matrices hold one row of {@link #words(int)} longs per source, bit {@code d} standing for destination
+ * {@code d}.</p>
+ */
+@Getter
+public class ValidationResult {
+
+    private final int ports;
+    private final int words;
+    private final long[] reached;                                   //destinations reached at least once
+    private final long[] duplicate;                                 //destinations reached more than once
+    private final int missingCount;
+    private final int duplicateCount;
+
+    public ValidationResult(int ports, long[] reached, long[] duplicate) {
+        this.ports = ports;
+        this.words = words(ports);
+        this.reached = reached;
+        this.duplicate = duplicate;
+
+        int reachedCount = 0;
+        int duplicateCount = 0;
+        for (int i = 0; i < reached.length; i++) {
+            reachedCount += Long.bitCount(reached[i]);
+            duplicateCount += Long.bitCount(duplicate[i]);
+        }
+        this.missingCount = ports * ports - reachedCount;
+        this.duplicateCount = duplicateCount;
+    }
+
+    public static int words(int ports) {
+        return (ports + 63) >>> 6;
+    }
+
+    /**
+     * @return whether every source reaches every destination
+     */
+    public boolean isFullAccess() {
+        return missingCount == 0;
+    }
+
+    /**
+     * @return whether no source reaches a destination through more than one path
+     */
+    public boolean isUniquePath() {
+        return duplicateCount == 0;
+    }
+
+    public boolean isValid() {
+        return isFullAccess() && isUniquePath();
+    }
+
+    public boolean isReached(int source, int destination) {
+        return (reached[source * words + (destination >>> 6)] & 1L << destination) != 0;
+    }
+
+    public boolean isDuplicate(int source, int destination) {
+        return (duplicate[source * words + (destination >>> 6)] & 1L << destination) != 0;
+    }
+
+    /**
+     * @return destinations the source cannot reach, in increasing order
+     */
+    public int[] missing(int source) {
+        int[] missing = new int[ports - count(reached, source)];
+        for (int destination = 0, i = 0; destination < ports; destination++) {
+            if (!isReached(source, destination)) {
+                missing[i++] = destination;
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * @return destinations the source reaches through more than one path, in increasing order
+     */
+    public int[] duplicates(int source) {
+        int[] duplicates = new int[count(duplicate, source)];
+        for (int destination = 0, i = 0; destination < ports; destination++) {
+            if (isDuplicate(source, destination)) {
+                duplicates[i++] = destination;
+            }
+        }
+        return duplicates;
+    }
+
+    /**
+     * @return one line per faulty source, or an empty string for a valid schema
+     */
+    public String report() {
+        return report(false);
+    }
+
+    /**
+     * @param multiPath whether several paths per pair are expected, as in a Benes fabric, so only missing
+     *                  destinations count as errors
+     * @return one line per faulty source, or an empty string for a valid schema
+     */
+    public String report(boolean multiPath) {
+
+        if (isFullAccess() && (multiPath || isUniquePath())) {
+            return "";
+        }
+        int errors = 0;
+        StringBuilder sb = new StringBuilder();
+        for (int source = 0; source < ports; source++) {
+            if (count(reached, source) < ports) {
+                errors++;
+                append(sb.append("Source ").append(source).append(" cannot reach "), missing(source)).append(".\n");
+            }
+            if (!multiPath && count(duplicate, source) > 0) {
+                errors++;
+                append(sb.append("Source ").append(source).append(" reaches more than once "), duplicates(source)).append(".\n");
+            }
+        }
+        return "Found " + errors + " errors.\n" + sb;
+    }
+
+    private int count(long[] matrix, int source) {
+        int count = 0;
+        for (int i = source * words; i < (source + 1) * words; i++) {
+            count += Long.bitCount(matrix[i]);
+        }
+        return count;
+    }
+
+    private static StringBuilder append(StringBuilder sb, int[] destinations) {
+        for (int i = 0; i < destinations.length; i++) {
+            sb.append(i == 0 ? "" : ", ").append(destinations[i]);
+        }
+        return sb;
+    }
+}
@@ -0,0 +1,83 @@
+package mpls;
+
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Checks full access and path uniqueness of a {@link Fabric} with one reachability bit matrix
+ */
+public class Validator {
+
+    private Validator() {
+    }
+
+    /**
+     * Propagate the destinations reachable from every element back to front, one bit row per element, without walking
+     * any path
+     *
+     * <p>An element reaches whatever its two outputs reach; a destination reached through both outputs, or already
+     * reached twice behind one of them, is reached twice from the element as well. Only the rows of two adjacent
+     * columns are kept, so the pass costs O(elements * ports / 64) time whatever the number of paths. The rows of the
+     * first column are those of its sources.</p>
+     *
+     * @param fabric wired fabric
+     * @return missing and duplicate destinations of every source
+     */
+    public static ValidationResult validate(Fabric fabric) {
+        return validate(fabric, () -> false);
+    }
+
+    /**
+     * @param fabric    wired fabric
+     * @param cancelled checked before every column
+     * @return missing and duplicate destinations of every source
+     * @throws CancellationException once {@code cancelled} answers true
+     */
+    public static ValidationResult validate(Fabric fabric, BooleanSupplier cancelled) {
+
+        int ports = fabric.ports();
+        int rows = fabric.getRows();
+        int words = ValidationResult.words(ports);
+        long[] reached = new long[rows * words];                    //per row of the current column
+        long[] duplicate = new long[rows * words];
+        long[] nextReached = new long[rows * words];                //per row of the column after it
+        long[] nextDuplicate = new long[rows * words];
+
+        for (int row = 0; row < rows; row++) {                      //final column: its own two destinations
+            reached[row * words + (row >>> 5)] = 3L << (row * 2 & 63);
+        }
+        for (int column = fabric.getColumns() - 2; column >= 0; column--) {
+            if (cancelled.getAsBoolean()) {
+                throw new CancellationException("Validation cancelled");
+            }
+            long[] swap = nextReached;
+            nextReached = reached;
+            reached = swap;
+            swap = nextDuplicate;
+            nextDuplicate = duplicate;
+            duplicate = swap;
+            for (int row = 0; row < rows; row++) {
+                int element = fabric.index(row, column);
+                int up = fabric.target(element, Fabric.UP);
+                int down = fabric.target(element, Fabric.DOWN);
+                int upRow = up == Fabric.NONE ? -1 : fabric.row(up) * words;
+                int downRow = down == Fabric.NONE ? -1 : fabric.row(down) * words;
+                for (int word = 0; word < words; word++) {
+                    long upReached = upRow < 0 ? 0 : nextReached[upRow + word];
+                    long downReached = downRow < 0 ? 0 : nextReached[downRow + word];
+                    reached[row * words + word] = upReached | downReached;
+                    duplicate[row * words + word] = (upReached & downReached)
+                            | (upRow < 0 ? 0 : nextDuplicate[upRow + word]) | (downRow < 0 ? 0 : nextDuplicate[downRow + word]);
+                }
+            }
+        }
+
+        long[] sourceReached = new long[ports * words];
+        long[] sourceDuplicate = new long[ports * words];
+        for (int source = 0; source < ports; source++) {            //both sources of an element see the same rows
+            System.arraycopy(reached, (source >> 1) * words, sourceReached, source * words, words);
+            System.arraycopy(duplicate, (source >> 1) * words, sourceDuplicate, source * words, words);
+        }
+        return new ValidationResult(ports, sourceReached, sourceDuplicate);
+    }
+}
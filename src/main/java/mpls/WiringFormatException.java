@@ -0,0 +1,21 @@
+package mpls;
+
+import lombok.Getter;
+
+import java.io.IOException;
+
+/**
+ * A connection file that cannot be turned into a {@link Fabric}, pointing at the offending line and column
+ */
+@Getter
+public class WiringFormatException extends IOException {
+
+    private final int line;                                         //1-based
+    private final int column;                                       //1-based, in bytes
+
+    public WiringFormatException(String message, int line, int column) {
+        super("Line " + line + ", column " + column + ": " + message);
+        this.line = line;
+        this.column = column;
+    }
+}
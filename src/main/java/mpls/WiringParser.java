@@ -0,0 +1,249 @@
+package mpls;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streaming parser of connection files straight into a {@link Fabric}
+ *
+ * <p>The file holds the number of connections on its first line and then one connection per line, as six numbers:
+ * source row, source column, source side (0 up, 1 down), destination row, destination column and destination side.
+ * Numbers are decoded in place from the bytes, without strings. The buffer is read twice: once to size the fabric
+ * after its farthest element, and once to wire it.</p>
+ */
+public class WiringParser {
+
+    private final ByteBuffer buffer;
+    private int position;
+    private int line;
+    private int lineStart;                                          //position of the first byte of the current line
+    private int rows;
+    private int columns;
+
+    private WiringParser(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Parse a connection file through a read-only memory mapping
+     *
+     * @param path connection file
+     * @return the wired fabric
+     * @throws IOException if the file cannot be read, or a {@link WiringFormatException} if it is malformed
+     */
+    public static Fabric parse(Path path) throws IOException {
+        return parse(map(path));
+    }
+
+    /**
+     * @return a read-only memory mapping of the whole file
+     */
+    public static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * @return the whole contents of a classpath resource, in a heap buffer
+     */
+    public static ByteBuffer readResource(String name) throws IOException {
+        try (InputStream inputStream = WiringParser.class.getClassLoader().getResourceAsStream(name)) {
+            if (inputStream == null) {
+                throw new FileNotFoundException("Resource " + name + " not found");
+            }
+            return readFully(inputStream);
+        }
+    }
+
+    /**
+     * Parse a connection file from a stream, e.g. a classpath resource that cannot be mapped
+     *
+     * @param inputStream connection file contents
+     * @return the wired fabric
+     * @throws IOException if the stream cannot be read, or a {@link WiringFormatException} if it is malformed
+     */
+    public static Fabric parse(InputStream inputStream) throws IOException {
+        return parse(readFully(inputStream));
+    }
+
+    /**
+     * @return the whole remaining contents of a stream, in a heap buffer
+     */
+    public static ByteBuffer readFully(InputStream inputStream) throws IOException {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        int read;
+        while ((read = inputStream.read(chunk)) != -1) {
+            bytes.write(chunk, 0, read);
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    /**
+     * Parse a connection file held in a buffer, from its position to its limit; the buffer itself is left untouched
+     *
+     * @param buffer connection file contents
+     * @return the wired fabric
+     * @throws WiringFormatException if the contents are malformed
+     */
+    public static Fabric parse(ByteBuffer buffer) throws WiringFormatException {
+
+        long start = System.nanoTime();
+        WiringParser parser = new WiringParser(buffer);
+        parser.read(null);                                          //first pass, size only
+        if (parser.rows == 0) {
+            throw new WiringFormatException("no connections", parser.line, 1);
+        }
+        Fabric fabric;
+        try {
+            fabric = new Fabric(parser.rows, parser.columns);
+        } catch (IllegalArgumentException e) {
+            throw new WiringFormatException(e.getMessage(), 1, 1);
+        }
+        parser.read(fabric);                                        //second pass, wire
+        Metrics.get().recordPhase(Metrics.Phase.PARSE, start);
+        return fabric;
+    }
+
+    /**
+     * Run over the whole buffer, either measuring the fabric or wiring it
+     *
+     * @param fabric fabric to wire, or null to only measure
+     */
+    private void read(Fabric fabric) throws WiringFormatException {
+
+        position = buffer.position();
+        line = 1;
+        lineStart = position;
+
+        skipEmptyLines();
+        int totalConnections = readInt();
+        endLine();
+        for (int i = 0; i < totalConnections; i++) {               //for each line read a connection
+            skipEmptyLines();
+            if (position >= buffer.limit()) {
+                throw error("expected " + totalConnections + " connections, found " + i);
+            }
+            //every row and every column but the last hold a connection, so larger indices cannot be wired
+            int connectionLine = line;
+            int connectionColumn = position - lineStart + 1;
+            int sourceRow = readIndex("row", totalConnections - 1, totalConnections);
+            int sourceColumn = readIndex("column", totalConnections, totalConnections);
+            int sourcePort = readSide();
+            int destinationRow = readIndex("row", totalConnections - 1, totalConnections);
+            int destinationColumn = readIndex("column", totalConnections, totalConnections);
+            int destinationPort = readSide();
+            endLine();
+
+            if (fabric == null) {
+                rows = Math.max(rows, Math.max(sourceRow, destinationRow) + 1);
+                columns = Math.max(columns, Math.max(sourceColumn, destinationColumn) + 1);
+            } else {
+                try {
+                    fabric.connect(sourceRow, sourceColumn, sourcePort, destinationRow, destinationColumn, destinationPort);
+                } catch (IllegalArgumentException e) {
+                    throw new WiringFormatException(e.getMessage(), connectionLine, connectionColumn);
+                }
+            }
+        }
+    }
+
+    private int readInt() throws WiringFormatException {
+
+        skipBlanks();
+        int start = position;
+        int value = 0;
+        while (position < buffer.limit()) {
+            int digit = buffer.get(position) - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            if (value > (Integer.MAX_VALUE - digit) / 10) {
+                throw error("number too large");
+            }
+            value = value * 10 + digit;
+            position++;
+        }
+        if (position == start) {
+            throw error(position < buffer.limit() ? "expected a number, found '" + (char) buffer.get(position) + "'" : "expected a number, found end of file");
+        }
+        return value;
+    }
+
+    /**
+     * Read a row or column index, rejecting at its first digit any value that cannot belong to the declared connections
+     *
+     * @param what             "row" or "column", for the message
+     * @param max              largest index the declared connections can use
+     * @param totalConnections declared connections, for the message
+     */
+    private int readIndex(String what, int max, int totalConnections) throws WiringFormatException {
+
+        skipBlanks();
+        int start = position;
+        int index = readInt();
+        if (index > max) {
+            position = start;
+            throw error(what + " " + index + " out of range, " + totalConnections + " connections use " + what + "s 0 to " + max + " at most");
+        }
+        return index;
+    }
+
+    private int readSide() throws WiringFormatException {
+
+        int side = readInt();
+        if (side > 1) {
+            position--;
+            throw error("side must be 0 (up) or 1 (down), found " + side);
+        }
+        return side;
+    }
+
+    private void endLine() throws WiringFormatException {
+
+        skipBlanks();
+        if (position < buffer.limit()) {
+            if (buffer.get(position) != '\n') {
+                throw error("unexpected '" + (char) buffer.get(position) + "'");
+            }
+            newLine();
+        }
+    }
+
+    private void skipEmptyLines() {
+
+        skipBlanks();
+        while (position < buffer.limit() && buffer.get(position) == '\n') {
+            newLine();
+            skipBlanks();
+        }
+    }
+
+    private void skipBlanks() {
+        while (position < buffer.limit()) {
+            byte b = buffer.get(position);
+            if (b != ' ' && b != '\t' && b != '\r') {
+                break;
+            }
+            position++;
+        }
+    }
+
+    private void newLine() {
+        position++;
+        line++;
+        lineStart = position;
+    }
+
+    private WiringFormatException error(String message) {
+        return new WiringFormatException(message, line, position - lineStart + 1);
+    }
+}
@@ -0,0 +1,257 @@
+package mpls;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Enumerates the valid wirings (full access through exactly one path) of a {@code log2(ports)} column fabric
+ *
+ * <p>Wirings are built one inter-column permutation at a time, one output line at a time. Every element keeps the
+ * set of first column rows reaching it as a bit mask; a wiring is valid exactly when no first column row ever reaches
+ * an element twice, so a line that would join two masks with a common row is pruned right away.</p>
+ *
+ * <p>Relabelling the rows of a column after the first, or swapping the two inputs of an element, turns a valid
+ * wiring into another valid one. Only the canonical representative of each such class is produced: following the
+ * output lines of a column in order, each new target element is the lowest unused row and is entered on its up side
+ * first. The first decisions are fanned out as fork-join tasks, so idle cores steal the remaining subtrees.</p>
+ */
+public class WiringSearch {
+
+    public static final int MAX_PORTS = 128;                        //first column rows fit in one long mask
+    private static final int SPLIT_LINES = 6;                       //decisions fanned out as separate tasks
+
+    private final int ports;
+    private final int rows;
+    private final int columns;
+
+    public WiringSearch(int ports) {
+        if (ports < 4 || ports > MAX_PORTS || Integer.bitCount(ports) != 1) {
+            throw new IllegalArgumentException("Port count must be a power of two between 4 and " + MAX_PORTS + ", got " + ports);
+        }
+        this.ports = ports;
+        this.rows = ports / 2;
+        this.columns = Integer.numberOfTrailingZeros(ports);
+    }
+
+    /**
+     * Search the wirings in parallel
+     *
+     * @param limit    stop after this many wirings
+     * @param consumer receives every wiring found, possibly from several threads at once
+     * @return number of wirings found
+     */
+    public long search(long limit, Consumer<FoundWiring> consumer) {
+        AtomicLong found = new AtomicLong();
+        ForkJoinPool.commonPool().invoke(new SearchTask(new State(), 0, 0, limit, found, consumer));
+        return Math.min(found.get(), limit);
+    }
+
+    /**
+     * Arguments: {@code --ports n [--limit n] [--output dir]}. Every wiring is written to {@code dir/wiring-<i>.txt}
+     * in the connection file format, and {@code dir/wirings.txt} lists the metrics of each; without a directory only
+     * the metrics are printed.
+     */
+    public static void main(String[] args) throws IOException {
+
+        int ports = 0;
+        long limit = 1000;
+        String output = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--ports":
+                    ports = Integer.parseInt(args[++i]);
+                    break;
+                case "--limit":
+                    limit = Long.parseLong(args[++i]);
+                    break;
+                case "--output":
+                    output = args[++i];
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        Path directory = output == null ? null : Files.createDirectories(Paths.get(output));
+        long found;
+        long start = System.nanoTime();
+        try (Writer index = directory == null ? null : Files.newBufferedWriter(directory.resolve("wirings.txt"), StandardCharsets.US_ASCII)) {
+            AtomicLong written = new AtomicLong();
+            found = new WiringSearch(ports).search(limit, wiring -> {
+                long number = written.incrementAndGet();
+                String name = "wiring-" + number + ".txt";
+                String metrics = name + " selfRoutable=" + wiring.isSelfRoutable()
+                        + (wiring.getAdmissiblePermutations() < 0 ? "" : " admissiblePermutations=" + wiring.getAdmissiblePermutations());
+                try {
+                    if (directory == null) {
+                        System.out.println(metrics);
+                        return;
+                    }
+                    Files.write(directory.resolve(name), WiringWriter.toString(wiring.getFabric()).getBytes(StandardCharsets.US_ASCII));
+                    synchronized (index) {
+                        index.write(metrics + "\n");
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+        System.err.printf("Found %d wirings in %.1f ms%n", found, (System.nanoTime() - start) / 1e6);
+    }
+
+    /**
+     * Partial wiring: the target of every output line decided so far, and the first column rows reaching each element
+     */
+    private class State {
+
+        private final int[] target;                                 //per column and line: target row * 2 + side
+        private final long[] mask;                                  //per column and row: first column rows reaching it
+        private final int[] opened;                                 //per column: rows entered so far
+        private final boolean[] downUsed;                           //per column and row: down side already entered
+
+        private State() {
+            target = new int[(columns - 1) * ports];
+            mask = new long[columns * rows];
+            opened = new int[columns];
+            downUsed = new boolean[columns * rows];
+            for (int row = 0; row < rows; row++) {
+                mask[row] = 1L << row;
+            }
+            opened[0] = rows;
+        }
+
+        private State(State other) {
+            target = other.target.clone();
+            mask = other.mask.clone();
+            opened = other.opened.clone();
+            downUsed = other.downUsed.clone();
+        }
+
+        /**
+         * @return every target ({@code row * 2 + side}) the given line may take next, in canonical order
+         */
+        private int candidates(int column, int line, int[] out) {
+            long reaching = mask[column * rows + (line >> 1)];
+            int base = (column + 1) * rows;
+            int count = 0;
+            for (int row = 0; row < opened[column + 1]; row++) {    //down side of a row entered before
+                if (!downUsed[base + row] && (mask[base + row] & reaching) == 0) {
+                    out[count++] = row * 2 + Fabric.DOWN;
+                }
+            }
+            if (opened[column + 1] < rows) {                        //or the lowest unused row
+                out[count++] = opened[column + 1] * 2 + Fabric.UP;
+            }
+            return count;
+        }
+
+        private void apply(int column, int line, int to) {
+            int index = (column + 1) * rows + (to >> 1);
+            target[column * ports + line] = to;
+            mask[index] |= mask[column * rows + (line >> 1)];
+            if ((to & 1) == Fabric.UP) {
+                opened[column + 1]++;
+            } else {
+                downUsed[index] = true;
+            }
+        }
+
+        private void undo(int column, int line, int to) {
+            int index = (column + 1) * rows + (to >> 1);
+            mask[index] &= ~mask[column * rows + (line >> 1)];
+            if ((to & 1) == Fabric.UP) {
+                opened[column + 1]--;
+            } else {
+                downUsed[index] = false;
+            }
+        }
+
+        private Fabric toFabric() {
+            Fabric fabric = new Fabric(rows, columns);
+            for (int column = 0; column < columns - 1; column++) {
+                for (int line = 0; line < ports; line++) {
+                    int to = target[column * ports + line];
+                    fabric.connect(line >> 1, column, line & 1, to >> 1, column + 1, to & 1);
+                }
+            }
+            return fabric;
+        }
+    }
+
+    private class SearchTask extends RecursiveAction {
+
+        private final State state;
+        private final int column;                                   //next line to wire
+        private final int line;
+        private final long limit;
+        private final AtomicLong found;
+        private final Consumer<FoundWiring> consumer;
+
+        private SearchTask(State state, int column, int line, long limit, AtomicLong found, Consumer<FoundWiring> consumer) {
+            this.state = state;
+            this.column = column;
+            this.line = line;
+            this.limit = limit;
+            this.found = found;
+            this.consumer = consumer;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (column * ports + line >= SPLIT_LINES || column == columns - 1) {
+                search(column, line, new int[(columns - 1) * ports][rows + 1]);
+                return;
+            }
+            int[] candidates = new int[rows + 1];
+            int count = state.candidates(column, line, candidates);
+            List<SearchTask> tasks = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                State child = new State(state);
+                child.apply(column, line, candidates[i]);
+                tasks.add(line + 1 == ports ? new SearchTask(child, column + 1, 0, limit, found, consumer)
+                        : new SearchTask(child, column, line + 1, limit, found, consumer));
+            }
+            invokeAll(tasks);
+        }
+
+        /**
+         * Depth first over the remaining lines, on this task's own state
+         *
+         * @param scratch one candidate buffer per line, i.e. per depth of the search
+         */
+        private void search(int column, int line, int[][] scratch) {
+
+            if (found.get() >= limit) {
+                return;
+            }
+            if (column == columns - 1) {                            //every column wired, and no row reached twice
+                if (found.incrementAndGet() <= limit) {
+                    consumer.accept(FoundWiring.of(state.toFabric()));
+                }
+                return;
+            }
+            int[] candidates = scratch[column * ports + line];
+            int count = state.candidates(column, line, candidates);
+            for (int i = 0; i < count; i++) {
+                state.apply(column, line, candidates[i]);
+                if (line + 1 == ports) {
+                    search(column + 1, 0, scratch);
+                } else {
+                    search(column, line + 1, scratch);
+                }
+                state.undo(column, line, candidates[i]);
+            }
+        }
+    }
+}
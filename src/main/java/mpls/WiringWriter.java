@@ -0,0 +1,53 @@
+package mpls;
+
+import java.io.IOException;
+
+/**
+ * Writes a {@link Fabric} back in the connection file format read by {@link WiringParser}
+ */
+public class WiringWriter {
+
+    private WiringWriter() {
+    }
+
+    /**
+     * @param fabric wired fabric
+     * @param out    receives the number of links, then one line per link
+     */
+    public static void write(Fabric fabric, Appendable out) throws IOException {
+
+        int links = 0;
+        for (int link = 0; link < fabric.getNext().length; link++) {
+            if (fabric.getNext()[link] != Fabric.NONE) {
+                links++;
+            }
+        }
+        out.append(Integer.toString(links)).append('\n');
+        for (int element = 0; element < fabric.size(); element++) {
+            for (int port = Fabric.UP; port <= Fabric.DOWN; port++) {
+                int target = fabric.target(element, port);
+                if (target != Fabric.NONE) {
+                    out.append(Integer.toString(fabric.row(element))).append(' ')
+                            .append(Integer.toString(fabric.column(element))).append(' ')
+                            .append(Integer.toString(port)).append(' ')
+                            .append(Integer.toString(fabric.row(target))).append(' ')
+                            .append(Integer.toString(fabric.column(target))).append(' ')
+                            .append(Integer.toString(fabric.targetPort(element, port))).append('\n');
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the connection file of the fabric
+     */
+    public static String toString(Fabric fabric) {
+        StringBuilder sb = new StringBuilder();
+        try {
+            write(fabric, sb);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);                     //a StringBuilder never fails
+        }
+        return sb.toString();
+    }
+}